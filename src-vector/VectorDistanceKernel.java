@@ -0,0 +1,76 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * This class is the SIMD version of the distance summary pass
+ * It reads the distance column a full vector at a time, and the
+ * rows past the last full vector with a masked load
+ * Trips without location data have a NaN distance, and lanes
+ * holding NaN are masked out of the sum and the count and never
+ * compare greater than the running maximum
+ * Each lane keeps its own maximum and the row it came from, and
+ * the lanes are reduced at the end, with a tie going to the lower
+ * row, so the longest trip and its row match the plain loop
+ * The sum is added up lane by lane, so it can differ from the
+ * plain loop in the last bits
+ * It must be compiled and run with --add-modules jdk.incubator.vector,
+ * and DistanceKernels falls back to its plain loop without it
+ * Build: javac --add-modules jdk.incubator.vector -cp bin -d bin src-vector/*.java
+ *
+ */
+public final class VectorDistanceKernel implements DistanceKernels.SummaryKernel {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+	private static final double[] LANE_OFFSETS = laneOffsets();
+
+	@Override
+	public DistanceKernels.Summary summarize(double[] distances, int from, int to) {
+		int lanes = SPECIES.length();
+		DoubleVector laneOffsets = DoubleVector.fromArray(SPECIES, LANE_OFFSETS, 0);
+		DoubleVector max = DoubleVector.zero(SPECIES);
+		DoubleVector maxRow = DoubleVector.broadcast(SPECIES, from);
+		DoubleVector sum = DoubleVector.zero(SPECIES);
+		int count = 0;
+
+		int row = from;
+		int fullVectors = from + SPECIES.loopBound(to - from);
+		for (; row < fullVectors; row += lanes) {
+			DoubleVector distance = DoubleVector.fromArray(SPECIES, distances, row);
+			// NaN is the only value not equal to itself
+			VectorMask<Double> located = distance.compare(VectorOperators.EQ, distance);
+			sum = sum.add(distance, located);
+			count += located.trueCount();
+			VectorMask<Double> longer = distance.compare(VectorOperators.GT, max);
+			max = max.blend(distance, longer);
+			maxRow = maxRow.blend(laneOffsets.add(row), longer);
+		}
+		if (row < to) {
+			VectorMask<Double> inRange = SPECIES.indexInRange(row, to);
+			DoubleVector distance = DoubleVector.fromArray(SPECIES, distances, row, inRange);
+			VectorMask<Double> located = distance.compare(VectorOperators.EQ, distance).and(inRange);
+			sum = sum.add(distance, located);
+			count += located.trueCount();
+			VectorMask<Double> longer = distance.compare(VectorOperators.GT, max).and(located);
+			max = max.blend(distance, longer);
+			maxRow = maxRow.blend(laneOffsets.add(row), longer);
+		}
+
+		double longest = max.reduceLanes(VectorOperators.MAX);
+		int argMax = from;
+		if (longest > 0.0) {
+			VectorMask<Double> atLongest = max.compare(VectorOperators.EQ, longest);
+			argMax = (int) maxRow.reduceLanes(VectorOperators.MIN, atLongest);
+		}
+		return new DistanceKernels.Summary(longest, argMax, sum.reduceLanes(VectorOperators.ADD), count);
+	}
+
+	private static double[] laneOffsets() {
+		double[] offsets = new double[SPECIES.length()];
+		for (int lane = 0; lane < offsets.length; lane++) {
+			offsets[lane] = lane;
+		}
+		return offsets;
+	}
+}
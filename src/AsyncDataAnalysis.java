@@ -0,0 +1,306 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * This class runs DataAnalysis queries on an executor and hands
+ * back a CompletableFuture for each, so independent questions
+ * can be asked at once instead of one after another
+ * A query can be given a deadline, after which its future fails
+ * with a TimeoutException
+ * When a future is cancelled or runs out of time, a query that
+ * has not started yet is never run, and the thread of one that
+ * is running is interrupted
+ * An interrupted query stops at the next piece of a row scan, or
+ * before it starts building an index it does not have yet; an
+ * index build that has already started on one thread runs to the end
+ * Unless given an executor, the facade runs queries on threads of
+ * its own, not on the common fork-join pool that parallel scans
+ * use, so an interrupt only ever reaches a query's own thread
+ * Call shutdown once the facade is no longer needed
+ *
+ */
+public class AsyncDataAnalysis {
+
+	private final DataAnalysis analysis;
+	private final Executor executor;
+	private final ExecutorService ownExecutor;
+	private volatile long deadlineNanos;
+
+	/**
+	 * Queries run on a pool of one daemon thread per core
+	 * that belongs to this facade
+	 * @param analysis is the analysis the queries are asked of
+	 */
+	public AsyncDataAnalysis(DataAnalysis analysis) {
+		this(analysis, Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+			Thread thread = new Thread(task, "async-data-analysis");
+			thread.setDaemon(true);
+			return thread;
+		}), true);
+	}
+
+	/**
+	 * The executor stays the caller's, and shutdown leaves it running
+	 * @param analysis is the analysis the queries are asked of
+	 * @param executor runs the queries
+	 */
+	public AsyncDataAnalysis(DataAnalysis analysis, Executor executor) {
+		this(analysis, executor, false);
+	}
+
+	private AsyncDataAnalysis(DataAnalysis analysis, Executor executor, boolean owned) {
+		this.analysis = analysis;
+		this.executor = executor;
+		this.ownExecutor = owned ? (ExecutorService) executor : null;
+	}
+
+	/**
+	 * Sets the deadline given to queries that are not asked
+	 * with one of their own
+	 * @param timeout is how long a query may take, or 0 for no deadline
+	 * @param unit is the unit of the timeout
+	 */
+	public void setDefaultDeadline(long timeout, TimeUnit unit) {
+		deadlineNanos = unit.toNanos(timeout);
+	}
+
+	/**
+	 * Stops the facade's own threads once the queries already
+	 * asked are done; later queries fail with a
+	 * RejectedExecutionException
+	 */
+	public void shutdown() {
+		if (ownExecutor != null) {
+			ownExecutor.shutdown();
+		}
+	}
+
+	/**
+	 * @return the analysis the queries are asked of
+	 */
+	public DataAnalysis getAnalysis() {
+		return analysis;
+	}
+
+	/**
+	 * Runs any query against the analysis with the default deadline
+	 * @param query is the question to ask
+	 * @return the future answer
+	 */
+	public <T> CompletableFuture<T> submit(Function<DataAnalysis, T> query) {
+		return submit(query, deadlineNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Runs any query against the analysis
+	 * @param query is the question to ask
+	 * @param timeout is how long the query may take, or 0 for no deadline
+	 * @param unit is the unit of the timeout
+	 * @return the future answer
+	 */
+	public <T> CompletableFuture<T> submit(Function<DataAnalysis, T> query, long timeout, TimeUnit unit) {
+		CompletableFuture<T> answer = new CompletableFuture<T>();
+		QueryTask<T> task = new QueryTask<T>(query, answer);
+		answer.whenComplete((result, failure) -> {
+			if (failure instanceof CancellationException || failure instanceof TimeoutException) {
+				task.interrupt();
+			}
+		});
+		if (timeout > 0) {
+			answer.orTimeout(timeout, unit);
+		}
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException ree) {
+			answer.completeExceptionally(ree);
+		}
+		return answer;
+	}
+
+	/**
+	 * Asks several queries at once
+	 * @param queries are the questions to ask
+	 * @return one future that holds the answers in order,
+	 * or fails if any of the queries fails
+	 */
+	public <T> CompletableFuture<List<T>> submitAll(List<Function<DataAnalysis, T>> queries) {
+		ArrayList<CompletableFuture<T>> answers = new ArrayList<CompletableFuture<T>>();
+		for (Function<DataAnalysis, T> query : queries) {
+			answers.add(submit(query));
+		}
+		CompletableFuture<List<T>> all = CompletableFuture.allOf(answers.toArray(new CompletableFuture<?>[0]))
+				.thenApply(done -> {
+					ArrayList<T> results = new ArrayList<T>();
+					for (CompletableFuture<T> answer : answers) {
+						results.add(answer.join());
+					}
+					return results;
+				});
+		all.whenComplete((results, failure) -> {
+			if (failure != null) {
+				for (CompletableFuture<T> answer : answers) {
+					answer.cancel(true);
+				}
+			}
+		});
+		return all;
+	}
+
+	/**
+	 * @see DataAnalysis#tripsByTripType(String, int)
+	 */
+	public CompletableFuture<Integer> tripsByTripType(String type, int year) {
+		return submit(da -> da.tripsByTripType(type, year));
+	}
+
+	/**
+	 * @see DataAnalysis#stationsByStatus(String, int)
+	 */
+	public CompletableFuture<Integer> stationsByStatus(String status, int year) {
+		return submit(da -> da.stationsByStatus(status, year));
+	}
+
+	/**
+	 * @see DataAnalysis#tripsByDestination(String)
+	 */
+	public CompletableFuture<String> tripsByDestination(String destination) {
+		return submit(da -> da.tripsByDestination(destination));
+	}
+
+	/**
+	 * @see DataAnalysis#tripsByPassholderTypeMonth(String)
+	 */
+	public CompletableFuture<Integer> tripsByPassholderTypeMonth(String passholderType) {
+		return submit(da -> da.tripsByPassholderTypeMonth(passholderType));
+	}
+
+	/**
+	 * @see DataAnalysis#mostTraveledBikeByTime()
+	 */
+	public CompletableFuture<Integer> mostTraveledBikeByTime() {
+		return submit(da -> da.mostTraveledBikeByTime());
+	}
+
+	/**
+	 * @see DataAnalysis#tripsWithinInterval(String, String)
+	 */
+	public CompletableFuture<String> tripsWithinInterval(String startTime, String endTime) {
+		return submit(da -> da.tripsWithinInterval(startTime, endTime));
+	}
+
+	/**
+	 * @see DataAnalysis#bikesInUseByDateTime(String, String)
+	 */
+	public CompletableFuture<Integer> bikesInUseByDateTime(String date, String time) {
+		return submit(da -> da.bikesInUseByDateTime(date, time));
+	}
+
+	/**
+	 * @see DataAnalysis#longestTripByDistance()
+	 */
+	public CompletableFuture<String> longestTripByDistance() {
+		return submit(da -> da.longestTripByDistance());
+	}
+
+	/**
+	 * @see DataAnalysis#tripsByStations(List)
+	 */
+	public CompletableFuture<Integer> tripsByStations(List<Station> stationList) {
+		return submit(da -> da.tripsByStations(stationList));
+	}
+
+	/**
+	 * @see DataAnalysis#stationsUniqueStartDate()
+	 */
+	public CompletableFuture<ArrayList<Station>> stationsUniqueStartDate() {
+		return submit(da -> da.stationsUniqueStartDate());
+	}
+
+	/**
+	 * @see DataAnalysis#popularDayInMonth(int)
+	 */
+	public CompletableFuture<Integer> popularDayInMonth(int monthInput) {
+		return submit(da -> da.popularDayInMonth(monthInput));
+	}
+
+	/**
+	 * @see DataAnalysis#closeStations()
+	 */
+	public CompletableFuture<Integer> closeStations() {
+		return submit(da -> da.closeStations());
+	}
+
+	/**
+	 * @see DataAnalysis#topOrBottomStation(String, String)
+	 */
+	public CompletableFuture<String> topOrBottomStation(String mostOrLeast, String startOrDestination) {
+		return submit(da -> da.topOrBottomStation(mostOrLeast, startOrDestination));
+	}
+
+	/**
+	 * @see DataAnalysis#stationMaintenanceCategories(int)
+	 */
+	public CompletableFuture<String> stationMaintenanceCategories(int departureThreshold) {
+		return submit(da -> da.stationMaintenanceCategories(departureThreshold));
+	}
+
+	/**
+	 * Runs one query on the executor unless its future
+	 * is already done, and keeps track of the thread running
+	 * it so a cancel can interrupt it
+	 */
+	private final class QueryTask<T> implements Runnable {
+		private final Function<DataAnalysis, T> query;
+		private final CompletableFuture<T> answer;
+		private Thread runner;
+		private boolean interrupted;
+
+		QueryTask(Function<DataAnalysis, T> query, CompletableFuture<T> answer) {
+			this.query = query;
+			this.answer = answer;
+		}
+
+		@Override
+		public void run() {
+			synchronized (this) {
+				if (answer.isDone()) {
+					return;
+				}
+				runner = Thread.currentThread();
+			}
+			try {
+				answer.complete(query.apply(analysis));
+			} catch (Throwable t) {
+				answer.completeExceptionally(t);
+			} finally {
+				boolean sentInterrupt;
+				synchronized (this) {
+					runner = null;
+					sentInterrupt = interrupted;
+				}
+				// an interrupt this task sent must not reach the next
+				// task the executor gives this thread, but any other
+				// interrupt, such as from shutdownNow, is left alone
+				if (sentInterrupt) {
+					Thread.interrupted();
+				}
+			}
+		}
+
+		synchronized void interrupt() {
+			if (runner != null) {
+				runner.interrupt();
+				interrupted = true;
+			}
+		}
+	}
+}
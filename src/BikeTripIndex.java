@@ -0,0 +1,287 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * This class indexes trips by bike
+ * For every bike it keeps the rows of its trips ordered by start
+ * time, along with the number of trips, total ride seconds and
+ * longest single trip in primitive arrays
+ * Ride time is end time minus start time, so trips that run past
+ * one or more midnights are counted in full
+ * Bikes are ranked by total ride seconds once, with ties going to
+ * the lower bike ID, so top-N questions need no further work
+ * The index can be built on a fork-join pool, in which case the
+ * rows are matched to bikes and each bike's trips are sorted
+ * and summed in pieces
+ *
+ */
+public class BikeTripIndex {
+
+	private TripTable trips;
+	private int[] bikeIDs;
+	private int[] offsets;
+	private int[] rows;
+	private long[] starts;
+	private long[] rideSeconds;
+	private long[] longestTrip;
+	private int[] ranking;
+
+	/**
+	 * Builds the index for all trips in a table
+	 * @param trips are the trips to index
+	 */
+	public BikeTripIndex(TripTable trips) {
+		this(trips, null);
+	}
+
+	/**
+	 * Builds the index for all trips in a table
+	 * @param trips are the trips to index
+	 * @param parallel splits the work across cores, or is null
+	 * to build on the calling thread
+	 */
+	public BikeTripIndex(TripTable trips, ParallelRowScan parallel) {
+		this.trips = trips;
+		int size = trips.size();
+		int[] ids = Arrays.copyOf(trips.bikeIDColumn(), size);
+		if (parallel == null) {
+			Arrays.sort(ids);
+		} else {
+			Arrays.parallelSort(ids);
+		}
+		int unique = 0;
+		for (int i = 0; i < size; i++) {
+			if (i == 0 || ids[i] != ids[i - 1]) {
+				ids[unique++] = ids[i];
+			}
+		}
+		bikeIDs = Arrays.copyOf(ids, unique);
+
+		offsets = new int[unique + 1];
+		int[] slotOfRow = new int[size];
+		scan(parallel, size, (from, to) -> {
+			for (int row = from; row < to; row++) {
+				slotOfRow[row] = Arrays.binarySearch(bikeIDs, trips.getBikeID(row));
+			}
+		});
+		for (int row = 0; row < size; row++) {
+			offsets[slotOfRow[row] + 1]++;
+		}
+		for (int slot = 0; slot < unique; slot++) {
+			offsets[slot + 1] += offsets[slot];
+		}
+		rows = new int[size];
+		int[] fill = Arrays.copyOf(offsets, unique);
+		for (int row = 0; row < size; row++) {
+			rows[fill[slotOfRow[row]]++] = row;
+		}
+		starts = new long[size];
+		for (int i = 0; i < size; i++) {
+			starts[i] = trips.getStartTime(rows[i]);
+		}
+		int[] rowBuffer = new int[size];
+		long[] startBuffer = new long[size];
+		rideSeconds = new long[unique];
+		longestTrip = new long[unique];
+		// each bike owns its own run of rows, so pieces of bikes
+		// can be sorted and summed at the same time
+		scan(parallel, unique, (fromSlot, toSlot) -> {
+			for (int slot = fromSlot; slot < toSlot; slot++) {
+				sortByStart(offsets[slot], offsets[slot + 1], rowBuffer, startBuffer);
+				for (int i = offsets[slot]; i < offsets[slot + 1]; i++) {
+					long seconds = trips.getEndTime(rows[i]) - starts[i];
+					rideSeconds[slot] += seconds;
+					longestTrip[slot] = Math.max(longestTrip[slot], seconds);
+				}
+			}
+		});
+
+		Integer[] bySeconds = new Integer[unique];
+		for (int slot = 0; slot < unique; slot++) {
+			bySeconds[slot] = slot;
+		}
+		Comparator<Integer> busiestFirst = (a, b) -> {
+			int compare = Long.compare(rideSeconds[b], rideSeconds[a]);
+			return compare != 0 ? compare : Integer.compare(bikeIDs[a], bikeIDs[b]);
+		};
+		if (parallel == null) {
+			Arrays.sort(bySeconds, busiestFirst);
+		} else {
+			Arrays.parallelSort(bySeconds, busiestFirst);
+		}
+		ranking = new int[unique];
+		for (int i = 0; i < unique; i++) {
+			ranking[i] = bySeconds[i];
+		}
+	}
+
+	/**
+	 * Works on a run of rows or bikes
+	 */
+	private interface RangeWork {
+		void run(int from, int to);
+	}
+
+	private static void scan(ParallelRowScan parallel, int count, RangeWork work) {
+		if (parallel == null) {
+			work.run(0, count);
+		} else {
+			parallel.reduce(count, (from, to) -> {
+				work.run(from, to);
+				return null;
+			}, (left, right) -> null);
+		}
+	}
+
+	/**
+	 * @return the number of different bikes in the trips
+	 */
+	public int size() {
+		return bikeIDs.length;
+	}
+
+	/**
+	 * @return the IDs of the n bikes with the most ride seconds,
+	 * busiest first
+	 */
+	public int[] mostUsedBikes(int n) {
+		int[] top = new int[Math.max(0, Math.min(n, ranking.length))];
+		for (int i = 0; i < top.length; i++) {
+			top[i] = bikeIDs[ranking[i]];
+		}
+		return top;
+	}
+
+	/**
+	 * The ranking is walked from the end one run of equal ride
+	 * seconds at a time, and each run is read forwards so ties
+	 * still go to the lower bike ID
+	 * @return the IDs of the n bikes with the fewest ride seconds,
+	 * least used first
+	 */
+	public int[] leastUsedBikes(int n) {
+		int[] bottom = new int[Math.max(0, Math.min(n, ranking.length))];
+		int filled = 0;
+		int runEnd = ranking.length;
+		while (filled < bottom.length) {
+			int runStart = runEnd - 1;
+			while (runStart > 0 && rideSeconds[ranking[runStart - 1]] == rideSeconds[ranking[runEnd - 1]]) {
+				runStart--;
+			}
+			for (int i = runStart; i < runEnd && filled < bottom.length; i++) {
+				bottom[filled++] = bikeIDs[ranking[i]];
+			}
+			runEnd = runStart;
+		}
+		return bottom;
+	}
+
+	/**
+	 * @return the number of trips the bike made
+	 */
+	public int getTripCount(int bikeID) {
+		int slot = Arrays.binarySearch(bikeIDs, bikeID);
+		return slot < 0 ? 0 : offsets[slot + 1] - offsets[slot];
+	}
+
+	/**
+	 * @return the total seconds the bike spent on trips
+	 */
+	public long getRideSeconds(int bikeID) {
+		int slot = Arrays.binarySearch(bikeIDs, bikeID);
+		return slot < 0 ? 0 : rideSeconds[slot];
+	}
+
+	/**
+	 * Counts only the part of each trip inside the window, so a
+	 * trip that started before it or ended after it is cut short
+	 * @param bikeID is the bike to check
+	 * @param from is the start of the window in epoch seconds
+	 * @param to is the end of the window in epoch seconds
+	 * @return the seconds the bike spent on trips in the window
+	 */
+	public long getRideSeconds(int bikeID, long from, long to) {
+		int slot = Arrays.binarySearch(bikeIDs, bikeID);
+		if (slot < 0 || to <= from) {
+			return 0;
+		}
+		int i = firstStartAtOrAfter(slot, from - longestTrip[slot]);
+		long seconds = 0;
+		for (; i < offsets[slot + 1] && starts[i] < to; i++) {
+			long overlap = Math.min(trips.getEndTime(rows[i]), to) - Math.max(starts[i], from);
+			if (overlap > 0) {
+				seconds += overlap;
+			}
+		}
+		return seconds;
+	}
+
+	/**
+	 * @return the table rows of the bike's trips, ordered by start time
+	 */
+	public int[] getTimeline(int bikeID) {
+		int slot = Arrays.binarySearch(bikeIDs, bikeID);
+		return slot < 0 ? new int[0] : Arrays.copyOfRange(rows, offsets[slot], offsets[slot + 1]);
+	}
+
+	/**
+	 * @return the table rows of the bike's trips that started
+	 * from one time up to another, ordered by start time
+	 */
+	public int[] getTimeline(int bikeID, long from, long to) {
+		int slot = Arrays.binarySearch(bikeIDs, bikeID);
+		if (slot < 0) {
+			return new int[0];
+		}
+		return Arrays.copyOfRange(rows, firstStartAtOrAfter(slot, from),
+				Math.max(firstStartAtOrAfter(slot, from), firstStartAtOrAfter(slot, to)));
+	}
+
+	/**
+	 * A stable merge sort of one bike's rows by start time,
+	 * so trips that start together stay in file order
+	 */
+	private void sortByStart(int from, int to, int[] rowBuffer, long[] startBuffer) {
+		if (to - from < 2) {
+			return;
+		}
+		boolean sorted = true;
+		for (int i = from + 1; i < to && sorted; i++) {
+			sorted = starts[i - 1] <= starts[i];
+		}
+		if (sorted) {
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		sortByStart(from, middle, rowBuffer, startBuffer);
+		sortByStart(middle, to, rowBuffer, startBuffer);
+		int i = from;
+		int j = middle;
+		int n = from;
+		while (i < middle || j < to) {
+			if (j == to || (i < middle && starts[i] <= starts[j])) {
+				rowBuffer[n] = rows[i];
+				startBuffer[n++] = starts[i++];
+			} else {
+				rowBuffer[n] = rows[j];
+				startBuffer[n++] = starts[j++];
+			}
+		}
+		System.arraycopy(rowBuffer, from, rows, from, to - from);
+		System.arraycopy(startBuffer, from, starts, from, to - from);
+	}
+
+	private int firstStartAtOrAfter(int slot, long time) {
+		int low = offsets[slot];
+		int high = offsets[slot + 1];
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (starts[mid] < time) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
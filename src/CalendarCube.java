@@ -0,0 +1,303 @@
+import java.util.Arrays;
+
+/**
+ * This class is a dense count cube of trips by start year, month,
+ * day and hour, passholder type and trip route category
+ * Calendar questions and any roll-up across these dimensions
+ * are answered by adding up cells instead of scanning the trips
+ * Passholder types and route categories are held by their
+ * StringDictionary codes, and each gets a small local index in
+ * the cube the first time it is seen
+ * New trips can be merged in at any time, and the cube grows
+ * when they bring a new year or category
+ *
+ */
+public class CalendarCube implements TripConsumer {
+
+	public static final int ANY = -1;
+
+	private static final int MONTHS = 12;
+	private static final int DAYS = 31;
+	private static final int HOURS = 24;
+
+	private int firstYear;
+	private int years;
+	private int[] passholderCodes = new int[0];
+	private int[] routeCodes = new int[0];
+	private int[] passholderIndex = new int[0];
+	private int[] routeIndex = new int[0];
+	private int[] counts = new int[0];
+	private long total;
+
+	/**
+	 * Builds an empty cube
+	 */
+	public CalendarCube() {
+	}
+
+	/**
+	 * Builds a cube holding every trip in a table
+	 * @param trips are the trips to count
+	 */
+	public CalendarCube(TripTable trips) {
+		merge(trips);
+	}
+
+	/**
+	 * Adds every trip in a table to the cube
+	 * @param trips are the trips to count
+	 */
+	public void merge(TripTable trips) {
+		merge(trips, 0, trips.size());
+	}
+
+	/**
+	 * Adds a run of rows from a table to the cube
+	 * @param trips are the trips to count
+	 * @param from is the first row to add
+	 * @param to is the row after the last one to add
+	 */
+	public void merge(TripTable trips, int from, int to) {
+		for (int row = from; row < to; row++) {
+			add(trips.getStartTime(row), trips.getPassholderTypeCode(row), trips.getTripRouteCategoryCode(row), 1);
+		}
+	}
+
+	/**
+	 * Adds another cube's counts to this one
+	 * @param other is the cube to add in
+	 */
+	public void merge(CalendarCube other) {
+		for (int y = 0; y < other.years; y++) {
+			for (int m = 0; m < MONTHS; m++) {
+				for (int d = 0; d < DAYS; d++) {
+					for (int h = 0; h < HOURS; h++) {
+						for (int p = 0; p < other.passholderCodes.length; p++) {
+							for (int r = 0; r < other.routeCodes.length; r++) {
+								int count = other.counts[other.cell(y, m, d, h, p, r)];
+								if (count != 0) {
+									addCell(other.firstYear + y, m, d, h,
+											other.passholderCodes[p], other.routeCodes[r], count);
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds a trip streamed from the parser
+	 * @param trip is the decoded trip
+	 */
+	@Override
+	public void accept(TripRecord trip) {
+		add(trip.startTime, trip.passholderTypeCode, trip.tripRouteCategoryCode, 1);
+	}
+
+	private void add(long startTime, int passholderCode, int routeCode, int count) {
+		addCell(EpochTime.year(startTime), EpochTime.month(startTime) - 1, EpochTime.day(startTime) - 1,
+				EpochTime.hour(startTime), passholderCode, routeCode, count);
+	}
+
+	private void addCell(int year, int month, int day, int hour, int passholderCode, int routeCode, int count) {
+		if (years == 0 || year < firstYear || year >= firstYear + years ||
+				localIndex(passholderIndex, passholderCode) < 0 || localIndex(routeIndex, routeCode) < 0) {
+			grow(year, passholderCode, routeCode);
+		}
+		int p = passholderIndex[passholderCode];
+		int r = routeIndex[routeCode];
+		counts[cell(year - firstYear, month, day, hour, p, r)] += count;
+		total += count;
+	}
+
+	/**
+	 * Makes room for a new year or category and moves the
+	 * existing counts into the larger layout
+	 */
+	private void grow(int year, int passholderCode, int routeCode) {
+		int newFirstYear = years == 0 ? year : Math.min(firstYear, year);
+		int newYears = years == 0 ? 1 : Math.max(firstYear + years, year + 1) - newFirstYear;
+		int[] newPassholders = passholderCodes;
+		if (localIndex(passholderIndex, passholderCode) < 0) {
+			newPassholders = Arrays.copyOf(passholderCodes, passholderCodes.length + 1);
+			newPassholders[passholderCodes.length] = passholderCode;
+		}
+		int[] newRoutes = routeCodes;
+		if (localIndex(routeIndex, routeCode) < 0) {
+			newRoutes = Arrays.copyOf(routeCodes, routeCodes.length + 1);
+			newRoutes[routeCodes.length] = routeCode;
+		}
+
+		int oldYears = years;
+		int oldFirstYear = firstYear;
+		int oldPassholders = passholderCodes.length;
+		int oldRoutes = routeCodes.length;
+		int[] oldCounts = counts;
+
+		firstYear = newFirstYear;
+		years = newYears;
+		passholderCodes = newPassholders;
+		routeCodes = newRoutes;
+		passholderIndex = indexOf(newPassholders);
+		routeIndex = indexOf(newRoutes);
+		counts = new int[years * MONTHS * DAYS * HOURS * passholderCodes.length * routeCodes.length];
+
+		int old = 0;
+		for (int y = 0; y < oldYears; y++) {
+			for (int m = 0; m < MONTHS; m++) {
+				for (int d = 0; d < DAYS; d++) {
+					for (int h = 0; h < HOURS; h++) {
+						for (int p = 0; p < oldPassholders; p++) {
+							for (int r = 0; r < oldRoutes; r++) {
+								counts[cell(oldFirstYear + y - firstYear, m, d, h, p, r)] = oldCounts[old++];
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static int[] indexOf(int[] codes) {
+		int largest = -1;
+		for (int code : codes) {
+			largest = Math.max(largest, code);
+		}
+		int[] index = new int[largest + 1];
+		Arrays.fill(index, -1);
+		for (int i = 0; i < codes.length; i++) {
+			index[codes[i]] = i;
+		}
+		return index;
+	}
+
+	private static int localIndex(int[] index, int code) {
+		return code >= 0 && code < index.length ? index[code] : -1;
+	}
+
+	private int cell(int y, int month, int day, int hour, int p, int r) {
+		return ((((y * MONTHS + month) * DAYS + day) * HOURS + hour) * passholderCodes.length + p)
+				* routeCodes.length + r;
+	}
+
+	/**
+	 * Adds up the cells that match every given value
+	 * Pass ANY for a calendar field, or null for a category
+	 * mask, to roll up across that dimension
+	 * @param year is the start year
+	 * @param month is the start month, 1 to 12
+	 * @param day is the start day of the month, 1 to 31
+	 * @param hour is the start hour, 0 to 23
+	 * @param passholderTypes is indexed by dictionary code and true for
+	 * the passholder types to include
+	 * @param routeCategories is indexed by dictionary code and true for
+	 * the route categories to include
+	 * @return the number of matching trips
+	 */
+	public long count(int year, int month, int day, int hour,
+			boolean[] passholderTypes, boolean[] routeCategories) {
+		if (year == ANY && month == ANY && day == ANY && hour == ANY &&
+				passholderTypes == null && routeCategories == null) {
+			return total;
+		}
+		int yFrom = 0;
+		int yTo = years;
+		if (year != ANY) {
+			if (year < firstYear || year >= firstYear + years) {
+				return 0;
+			}
+			yFrom = year - firstYear;
+			yTo = yFrom + 1;
+		}
+		if (!inRange(month, 1, MONTHS) || !inRange(day, 1, DAYS) || !inRange(hour, 0, HOURS - 1)) {
+			return 0;
+		}
+		int mFrom = month == ANY ? 0 : month - 1;
+		int mTo = month == ANY ? MONTHS : month;
+		int dFrom = day == ANY ? 0 : day - 1;
+		int dTo = day == ANY ? DAYS : day;
+		int hFrom = hour == ANY ? 0 : hour;
+		int hTo = hour == ANY ? HOURS : hour + 1;
+		boolean[] p = select(passholderCodes, passholderTypes);
+		boolean[] r = select(routeCodes, routeCategories);
+
+		long sum = 0;
+		for (int y = yFrom; y < yTo; y++) {
+			for (int m = mFrom; m < mTo; m++) {
+				for (int d = dFrom; d < dTo; d++) {
+					for (int h = hFrom; h < hTo; h++) {
+						int base = cell(y, m, d, h, 0, 0);
+						for (int pi = 0; pi < p.length; pi++) {
+							if (p[pi]) {
+								for (int ri = 0; ri < r.length; ri++) {
+									if (r[ri]) {
+										sum += counts[base + pi * routeCodes.length + ri];
+									}
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * @return the matching trips in each month, indexed 1 to 12
+	 */
+	public long[] countByMonth(int year, boolean[] passholderTypes, boolean[] routeCategories) {
+		long[] byMonth = new long[MONTHS + 1];
+		for (int m = 1; m <= MONTHS; m++) {
+			byMonth[m] = count(year, m, ANY, ANY, passholderTypes, routeCategories);
+		}
+		return byMonth;
+	}
+
+	/**
+	 * @return the matching trips on each day of a month, indexed 1 to 31
+	 */
+	public long[] countByDay(int year, int month, boolean[] passholderTypes, boolean[] routeCategories) {
+		long[] byDay = new long[DAYS + 1];
+		for (int d = 1; d <= DAYS; d++) {
+			byDay[d] = count(year, month, d, ANY, passholderTypes, routeCategories);
+		}
+		return byDay;
+	}
+
+	/**
+	 * @return the matching trips in each starting hour, indexed 0 to 23
+	 */
+	public long[] countByHour(int year, int month, int day, boolean[] passholderTypes, boolean[] routeCategories) {
+		long[] byHour = new long[HOURS];
+		for (int h = 0; h < HOURS; h++) {
+			byHour[h] = count(year, month, day, h, passholderTypes, routeCategories);
+		}
+		return byHour;
+	}
+
+	/**
+	 * @return the number of trips in the cube
+	 */
+	public long size() {
+		return total;
+	}
+
+	private static boolean inRange(int value, int low, int high) {
+		return value == ANY || (value >= low && value <= high);
+	}
+
+	/**
+	 * Turns a mask indexed by dictionary code into one indexed
+	 * by the cube's local category index
+	 */
+	private static boolean[] select(int[] codes, boolean[] mask) {
+		boolean[] selected = new boolean[codes.length];
+		for (int i = 0; i < codes.length; i++) {
+			selected[i] = mask == null || (codes[i] < mask.length && mask[codes[i]]);
+		}
+		return selected;
+	}
+}
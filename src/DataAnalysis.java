@@ -2,84 +2,161 @@
  * This method performs various analyses on trip and 
  * station data
  * It creates arrays of trips and stations
- * along with a few helpful HashMaps that are used on
+ * along with per-station indexes that are used on
  * multiple analyses
+ * Time-based analyses work on the start and end
+ * timestamps of each trip in epoch seconds
+ * In parallel mode the scans that remain are split into
+ * pieces on the fork-join pool and the partial results are
+ * merged, giving the same answers as sequential mode
+ * An analysis can be shared between threads: the data and
+ * the indexes built up front never change after construction,
+ * and the lazy indexes are built once under a lock and then
+ * read without one
  */
 
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 
 public class DataAnalysis {
-	private ArrayList<Station> stations;
-	private ArrayList<Trip> trips;
-	private HashMap<Integer, Integer> startTimeMap;
-	private HashMap<Integer, Integer> endTimeMap;
-	HashMap<Integer, Double> stationLongitudeHashMap;
-	HashMap<Integer, Double> stationLatitudeHashMap;
+	private static final double CLOSE_STATION_KM = 2.0;
+	private static final int SCAN_PIECE_ROWS = 1 << 16;
+	
+	private final List<Station> stations;
+	private final TripTable trips;
+	private final StationTripIndex stationTrips;
+	private final StationRegistry stationRegistry;
+	private final CalendarCube calendar;
+	private final StationDirectory directory;
+	private volatile OccupancyTimeline occupancy;
+	private volatile StationGrid stationGrid;
+	private volatile TripBitmapIndex bitmaps;
+	private volatile BikeTripIndex bikeTrips;
+	private volatile OriginDestinationMatrix flows;
+	private volatile TripTimeIndex timeOrder;
+	private volatile ParallelRowScan parallelScan;
 	
 	/**
 	 * Users construct data analyses objects
 	 * by inputting the file extensions they want to use
 	 * We construct instance variables here to include
-	 * station/trip arrays and useful hash maps
+	 * station/trip arrays and useful indexes
+	 * The files are read through the DatasetRegistry, so other
+	 * consumers of the same files share one copy
 	 * @param fileNameStation is the file path for the station file
 	 * @param fileNameTrip is the file path for the trip file
 	 */
 	public DataAnalysis(String fileNameStation, String fileNameTrip) {
-		StationReader sr;
+		this(fileNameStation, fileNameTrip, false);
+	}
+	
+	/**
+	 * Users construct data analyses objects
+	 * by inputting the file extensions they want to use
+	 * and whether queries should run in parallel
+	 * @param fileNameStation is the file path for the station file
+	 * @param fileNameTrip is the file path for the trip file
+	 * @param parallel is whether to split scans across cores
+	 */
+	public DataAnalysis(String fileNameStation, String fileNameTrip, boolean parallel) {
+		this(readStations(fileNameStation), readTrips(fileNameTrip), parallel);
+	}
+	
+	/**
+	 * Builds an analysis without exiting when a file is missing,
+	 * for callers such as the reloader that have to keep running
+	 * @param fileNameStation is the file path for the station file
+	 * @param fileNameTrip is the file path for the trip file
+	 * @param parallel is whether to split scans across cores
+	 * @return the analysis of the two files
+	 */
+	public static DataAnalysis load(String fileNameStation, String fileNameTrip, boolean parallel)
+			throws FileNotFoundException {
+		return new DataAnalysis(DatasetRegistry.stations(fileNameStation),
+				DatasetRegistry.trips(fileNameTrip), parallel);
+	}
+	
+	private DataAnalysis(List<Station> stationList, TripTable tripTable, boolean parallel) {
+		setParallel(parallel);
+		stations = stationList;
+		trips = tripTable;
+		directory = new StationDirectory(trips);
+		stationTrips = new StationTripIndex(trips, directory);
+		stationRegistry = new StationRegistry(trips, directory);
+		calendar = scanRows((from, to) -> {
+			CalendarCube part = new CalendarCube();
+			part.merge(trips, from, to);
+			return part;
+		}, (left, right) -> {
+			left.merge(right);
+			return left;
+		});
+	}
+	
+	private static List<Station> readStations(String fileNameStation) {
 		try {
-			sr = new StationReader(fileNameStation);
-			stations = sr.getEachStation();
+			return DatasetRegistry.stations(fileNameStation);
 		} catch (FileNotFoundException fnfe) {
 			System.out.println("Please enter a valid station"
 					+ " file to analyze this quarter's data!");
 			System.exit(0);
+			return null;
 		}
-		TripReader tr;
+	}
+	
+	private static TripTable readTrips(String fileNameTrip) {
 		try {
-			tr = new TripReader(fileNameTrip);
-			trips = tr.getEachTrip();
-			createTimeMaps();
-			stationLongitudeHashMap = stationLatitudeMap(stations);
-			stationLatitudeHashMap = stationLongitudeMap(stations);
+			return DatasetRegistry.trips(fileNameTrip);
 		} catch (FileNotFoundException fnfe) {
 			System.out.println("Please enter a valid trip"
 					+ " file to analyze this quarter's data!");
 			System.exit(0);
-		} catch (NullPointerException npe) {
-			
+			return null;
 		}
 	}
 	
 	/**
-	 * The construct calls this method to make two hash maps
-	 * These maps represent time in terms of seconds
-	 * for easy relative comparisons
-	 * One maps trip IDs to start time proxies
-	 * One maps trip IDs to end time proxies
+	 * Switches between sequential and parallel queries
+	 * Parallel queries run on the common fork-join pool
+	 * @param parallel is whether to split scans across cores
+	 */
+	public void setParallel(boolean parallel) {
+		parallelScan = parallel ? new ParallelRowScan() : null;
+	}
+	
+	/**
+	 * @return whether queries are split across cores
 	 */
-	private void createTimeMaps() {
-		startTimeMap = new HashMap<Integer, Integer>();
-		for (Trip t : trips) {
-			Integer startValue = ((t.getStartYear() - 2016) * 977616000) + 
-					(t.getStartMonth() * 2678400) + 
-					(t.getStartDay() * 86400) +
-					(t.getStartHour() * 3600) +
-					(t.getStartMinute() * 60) + 
-					(t.getStartSecond());
-			startTimeMap.put(t.getTripID(), startValue);
+	public boolean isParallel() {
+		return parallelScan != null;
+	}
+	
+	/**
+	 * Scans rows 0 to rows - 1 in pieces merged left to right,
+	 * one after another, or on the fork-join pool in parallel mode
+	 * Before each piece the scan stops with a CancellationException
+	 * if the calling thread has been interrupted
+	 */
+	private <R> R scanRows(int rows, ParallelRowScan.RangeScan<R> scan, ParallelRowScan.Merge<R> merge) {
+		ParallelRowScan parallel = parallelScan;
+		if (parallel != null) {
+			return parallel.reduce(rows, scan, merge);
 		}
-		endTimeMap = new HashMap<Integer, Integer>();
-		for (Trip t : trips) {
-			Integer endValue = ((t.getEndYear() - 2016) * 977616000) + 
-					(t.getEndMonth() * 2678400) + 
-					(t.getEndDay() * 86400) +
-					(t.getEndHour() * 3600) +
-					(t.getEndMinute() * 60) + 
-					(t.getEndSecond());
-			endTimeMap.put(t.getTripID(), endValue);
+		Thread caller = Thread.currentThread();
+		ParallelRowScan.checkInterrupted(caller);
+		R result = scan.scan(0, Math.min(rows, SCAN_PIECE_ROWS));
+		for (int from = SCAN_PIECE_ROWS; from < rows; from += SCAN_PIECE_ROWS) {
+			ParallelRowScan.checkInterrupted(caller);
+			result = merge.merge(result, scan.scan(from, Math.min(rows, from + SCAN_PIECE_ROWS)));
 		}
+		return result;
+	}
+	
+	private <R> R scanRows(ParallelRowScan.RangeScan<R> scan, ParallelRowScan.Merge<R> merge) {
+		return scanRows(trips.size(), scan, merge);
 	}
 	
 	/**
@@ -98,16 +175,76 @@ public class DataAnalysis {
 	}
 	
 	/**
-	 * @return an array of all stations
+	 * @return the coordinates seen for each station in the trip file
+	 */
+	public StationRegistry getStationRegistry() {
+		return stationRegistry;
+	}
+	
+	/**
+	 * The cube is copied so callers cannot change the counts
+	 * the other queries are answered from
+	 * @return the trip counts by start time and category
+	 */
+	public CalendarCube getCalendarCube() {
+		CalendarCube copy = new CalendarCube();
+		copy.merge(calendar);
+		return copy;
+	}
+	
+	/**
+	 * The bitmaps are built the first time they are needed
+	 * @return bitmap indexes over the categorical trip fields
 	 */
-	public ArrayList<Station> getAllStations() {
+	public TripBitmapIndex getTripBitmapIndex() {
+		TripBitmapIndex built = bitmaps;
+		if (built == null) {
+			synchronized (this) {
+				built = bitmaps;
+				if (built == null) {
+					ParallelRowScan.checkInterrupted(Thread.currentThread());
+					built = new TripBitmapIndex(trips);
+					bitmaps = built;
+				}
+			}
+		}
+		return built;
+	}
+	
+	/**
+	 * Builds Trip objects for the rows in a bitmap
+	 * @param rows are the rows to return
+	 * @return the trips, in file order
+	 */
+	public ArrayList<Trip> getTrips(RowBitmap rows) {
+		ArrayList<Trip> found = new ArrayList<>();
+		for (int row : rows.toArray()) {
+			found.add(trips.getTrip(row));
+		}
+		return found;
+	}
+	
+	/**
+	 * @return a read-only list of all stations
+	 */
+	public List<Station> getAllStations() {
 		return stations;
 	}
 	
 	/**
-	 * @return an array of all trips
+	 * Trip objects are built from the table on each call
+	 * @return a read-only list of all trips
 	 */
-	public ArrayList<Trip> getAllTrips() {
+	public List<Trip> getAllTrips() {
+		return Collections.unmodifiableList(trips.toTrips());
+	}
+	
+	/**
+	 * The table is shared with other consumers of the same file
+	 * and cannot be changed
+	 * @return all trips as columns
+	 */
+	public TripTable getTripTable() {
 		return trips;
 	}
 	
@@ -119,13 +256,9 @@ public class DataAnalysis {
 	 * @return the number of trips 
 	 */
 	public int tripsByTripType(String type, int year) throws NullPointerException {
-		int count = 0;
-		for (Trip t : trips) {
-			if (t.getTripRouteCategory().equalsIgnoreCase("\"" + type + "\"") && t.getStartYear() == year) {
-				count++;
-			}
-		}
-		return count;
+		boolean[] matchingType = StringDictionary.shared().matchIgnoreCase("\"" + type + "\"");
+		return (int) calendar.count(year, CalendarCube.ANY, CalendarCube.ANY, CalendarCube.ANY,
+				null, matchingType);
 	}
 	
 	/**
@@ -137,8 +270,9 @@ public class DataAnalysis {
 	 */
 	public int stationsByStatus(String status, int year) throws NullPointerException {
 		int count = 0;
+		int statusCode = StringDictionary.shared().lookup(status);
 		for (Station s : stations) {
-			if (s.getStatus().equals(status) && s.getGoLiveYear() == year) {
+			if (s.getStatusCode() == statusCode && s.getGoLiveYear() == year) {
 				count++;
 			}
 		}
@@ -154,14 +288,8 @@ public class DataAnalysis {
 		if (stationID == 0000) {
 			return "Not a valid station name.";
 		}
-		int countToDest = 0;
-		double totalCount = 0.0;
-		for (Trip t : trips) {
-			totalCount++;
-			if (t.getEndStation() == stationID) {
-				countToDest++;
-			}
-		}
+		int countToDest = stationTrips.countArrivals(stationID);
+		double totalCount = trips.size();
 		return String.format("%.4f%%", countToDest/totalCount*100);
 		
 	}
@@ -174,8 +302,9 @@ public class DataAnalysis {
 	 * will alert one of an incorrect name input
 	 */
 	private int stationNameToStationID(String stationName) throws NullPointerException {
+		int stationNameCode = StringDictionary.shared().lookup(stationName);
 		for (Station s : stations) {
-			if (s.getStationName().equals(stationName)) {
+			if (s.getStationNameCode() == stationNameCode) {
 				return s.getStationID();
 			}
 		}
@@ -189,12 +318,8 @@ public class DataAnalysis {
 	 * @return the month with the most trips 
 	 */
 	public int tripsByPassholderTypeMonth(String passholderType) throws NullPointerException {
-		int[] months = new int[12];
-		for (Trip t : trips) {
-			if (t.getPassholderType().contains(passholderType)){
-				months[t.getStartMonth()] = months[t.getStartMonth()] + 1;		
-			}
-		}
+		boolean[] matchingType = StringDictionary.shared().matchContaining(passholderType);
+		long[] months = calendar.countByMonth(CalendarCube.ANY, matchingType, null);
 		
 		int largestMonth = 0;
 		for (int i = 1; i < months.length; i++) {	
@@ -206,51 +331,106 @@ public class DataAnalysis {
 	}
 	
 	/**
-	 * This method uses a hash map to map bikeID to trip duration
-	 * for all trips the bike was involved in
-	 * It then finds the bike with the greatest value in the
-	 * hash map
-	 * The hash map measures trips by seconds
+	 * This method finds the bike that spent the most
+	 * total time on trips, from the per-bike index
+	 * Ties go to the lower bike ID
+	 * Trip time is the difference between the end and start
+	 * timestamps, so trips that run past midnight count in full
 	 * @return the bike ID that was traveled the most
 	 */
 	public int mostTraveledBikeByTime()  throws NullPointerException{
-		int busyBikeID = 0;
-		double busyBikeHours = 0;
-		HashMap<Integer, Double> bikes = new HashMap<Integer, Double>();
-		for (Trip t : trips) {
-			double tripDuration = 0.0;
-			if (t.getStartDay() == t.getEndDay()) {
-				double startSecond = (t.getStartHour() * 3600) + (t.getStartMinute() * 60) +
-						t.getStartSecond();
-				double endSecond = t.getEndHour() * 3600 + t.getEndMinute() * 60 + 
-						t.getEndSecond();
-				double tripDurationSeconds = (endSecond - startSecond);
-				tripDuration = tripDurationSeconds / 3600;
-				bikes.putIfAbsent(t.getBikeID(), tripDuration);
-				bikes.put(t.getBikeID(), bikes.get(t.getBikeID()) + tripDuration);
-			} else {
-				double startSecond = (t.getStartHour() * 3600) + (t.getStartMinute() * 60) +
-						t.getStartSecond();
-				double endSecond = t.getEndHour() * 3600 + t.getEndMinute() * 60 + 
-						t.getEndSecond() + 86400;
-				double tripDurationSeconds = (endSecond - startSecond);
-				tripDuration = tripDurationSeconds / 3600;
-				bikes.putIfAbsent(t.getBikeID(), tripDuration);
-				bikes.replace(t.getBikeID(), bikes.get(t.getBikeID()) + tripDuration);
+		int[] busiest = getBikeTripIndex().mostUsedBikes(1);
+		return busiest.length == 0 ? 0 : busiest[0];
+	}
+	
+	/**
+	 * @param n is the number of bikes wanted
+	 * @return the IDs of the n bikes with the most time
+	 * on trips, busiest first
+	 */
+	public int[] mostUsedBikes(int n) {
+		return getBikeTripIndex().mostUsedBikes(n);
+	}
+	
+	/**
+	 * @param n is the number of bikes wanted
+	 * @return the IDs of the n bikes with the least time
+	 * on trips, least used first
+	 */
+	public int[] leastUsedBikes(int n) {
+		return getBikeTripIndex().leastUsedBikes(n);
+	}
+	
+	/**
+	 * Gives the trips a bike made in the order it made them
+	 * @param bikeID is the bike to look up
+	 * @return the bike's trips ordered by start time
+	 */
+	public ArrayList<Trip> bikeTimeline(int bikeID) {
+		ArrayList<Trip> timeline = new ArrayList<>();
+		for (int row : getBikeTripIndex().getTimeline(bikeID)) {
+			timeline.add(trips.getTrip(row));
+		}
+		return timeline;
+	}
+	
+	/**
+	 * Counts the trips that started from one date and time
+	 * up to another
+	 * @param from is the earliest start in epoch seconds
+	 * @param to is the first start in epoch seconds to leave out
+	 * @return the number of trips
+	 */
+	public int tripsStartingBetween(long from, long to) {
+		return getTripTimeIndex().countStartingBetween(from, to);
+	}
+	
+	/**
+	 * The orderings are built the first time they are needed
+	 * @return the trips ordered by start time and time of day
+	 */
+	public TripTimeIndex getTripTimeIndex() {
+		TripTimeIndex built = timeOrder;
+		if (built == null) {
+			synchronized (this) {
+				built = timeOrder;
+				if (built == null) {
+					ParallelRowScan.checkInterrupted(Thread.currentThread());
+					built = new TripTimeIndex(trips);
+					timeOrder = built;
+				}
 			}
 		}
-		for (HashMap.Entry<Integer, Double> entry : bikes.entrySet()) {
-			if (entry.getValue() > busyBikeHours) {
-				busyBikeHours = entry.getValue();
-				busyBikeID = entry.getKey();
+		return built;
+	}
+	
+	/**
+	 * The index is built the first time it is needed,
+	 * on the fork-join pool in parallel mode
+	 * @return the trips and ride time of each bike
+	 */
+	public BikeTripIndex getBikeTripIndex() {
+		BikeTripIndex built = bikeTrips;
+		if (built == null) {
+			synchronized (this) {
+				built = bikeTrips;
+				if (built == null) {
+					ParallelRowScan.checkInterrupted(Thread.currentThread());
+					built = new BikeTripIndex(trips, parallelScan);
+					bikeTrips = built;
+				}
 			}
 		}
-		return busyBikeID;
+		return built;
 	}
 	
 	/**
 	 * This method calculates the number of bikes in use
 	 * given two periods of time regardless of the day
+	 * Only trips that start and end on the same day count,
+	 * and the comparison is done in seconds since midnight
+	 * Only the trips that started inside the window are
+	 * looked at, found through the time-of-day ordering
 	 * @param startTime is a given hour that rides must start on or after
 	 * @param endTime is a given hour that rides must end on or before
 	 * @return the number of trips in that interval
@@ -262,42 +442,37 @@ public class DataAnalysis {
 		int startMinuteInput = Integer.parseInt(startTimeInput[1]);
 		int endHourInput = Integer.parseInt(endTimeInput[0]);
 		int endMinuteInput = Integer.parseInt(endTimeInput[1]);
+		int fromSecond = (startHourInput * 60 + startMinuteInput) * 60;
+		int untilSecond = (endHourInput * 60 + endMinuteInput + 1) * 60;
 		int countInFrame = 0;
-		double totalCount = 0.0;
-		for (Trip t : trips) {
-			totalCount++;
-			if (t.getStartDay() == t.getEndDay() && t.getStartMonth() == t.getEndMonth()) {
-				if (t.getStartHour() > startHourInput && t.getEndHour() < endHourInput) {
-					countInFrame++;
-				} else if (t.getStartHour() == startHourInput && 
-						t.getStartMinute() >= startMinuteInput &&
-						t.getEndHour() < endHourInput) {
-					countInFrame++;
-				} else if (t.getStartHour() == startHourInput && 
-						t.getStartMinute() >= startMinuteInput &&
-						t.getEndHour() == endHourInput &&
-						t.getEndMinute() <= endMinuteInput) {
-					countInFrame++;
-				} else if (t.getStartHour() > startHourInput && 
-						t.getEndHour() == endHourInput &&
-						t.getEndMinute() <= endMinuteInput) {
-					countInFrame++;
+		double totalCount = trips.size();
+		if (fromSecond < untilSecond) {
+			int[] candidates = getTripTimeIndex().rowsStartingInWindow(fromSecond, untilSecond);
+			countInFrame = scanRows(candidates.length, (from, to) -> {
+				int count = 0;
+				for (int i = from; i < to; i++) {
+					long start = trips.getStartTime(candidates[i]);
+					long end = trips.getEndTime(candidates[i]);
+					if (EpochTime.epochDay(start) == EpochTime.epochDay(end) &&
+							EpochTime.secondOfDay(end) < untilSecond) {
+						count++;
+					}
 				}
-			}
+				return count;
+			}, Integer::sum);
 		}
 		return String.format("%.4f%%", countInFrame/totalCount*100);
 	}
 	
 	/**
-	 * This method uses the start and end hash maps
-	 * and compares rides to a time value input by the user
-	 * It gives the number of bikes in use at that input
+	 * This method looks up the number of bikes whose trip
+	 * had started and not yet ended at a time input by the user
+	 * The answer comes from the occupancy timeline
 	 * @param date is the date the user would like to check
 	 * @param time is the time the user would like to check
 	 * @return the number of bikes in use at that time
 	 */
 	public int bikesInUseByDateTime(String date, String time) { 
-		int bikesInUse = 0;
 		String[] dateInput = date.split("/");
 		String[] timeInput = time.split(":");
 		int yearInput = Integer.parseInt(dateInput[2]);
@@ -305,19 +480,41 @@ public class DataAnalysis {
 		int dayInput = Integer.parseInt(dateInput[1]);
 		int hourInput = Integer.parseInt(timeInput[0]);
 		int minuteInput = Integer.parseInt(timeInput[1]);
-		int inputValue = ((yearInput - 2016) * 977616000) +
-				(monthInput * 2678400) +
-				(dayInput * 86400) +
-				(hourInput * 3600) +
-				(minuteInput * 60);
-		for (HashMap.Entry<Integer, Integer> trip : startTimeMap.entrySet()) {
-			if (trip.getValue() <= inputValue) {
-				if (endTimeMap.get(trip.getKey()) >= inputValue) {
-					bikesInUse++;	
+		long inputValue = EpochTime.toEpochSecond(yearInput, monthInput, dayInput,
+				hourInput, minuteInput, 0);
+		return getOccupancyTimeline().bikesInUseAt(inputValue);
+	}
+	
+	/**
+	 * Gives the number of bikes in use at evenly spaced
+	 * times, such as every minute of the quarter
+	 * @param from is the first time in epoch seconds
+	 * @param to is the last time in epoch seconds
+	 * @param step is the spacing between times in seconds
+	 * @return the bikes in use at each time
+	 */
+	public int[] bikesInUseSeries(long from, long to, int step) {
+		return getOccupancyTimeline().bikesInUseSeries(from, to, step);
+	}
+	
+	/**
+	 * The timeline is built with one-minute steps
+	 * the first time it is needed
+	 * @return the occupancy timeline for all trips
+	 */
+	public OccupancyTimeline getOccupancyTimeline() {
+		OccupancyTimeline built = occupancy;
+		if (built == null) {
+			synchronized (this) {
+				built = occupancy;
+				if (built == null) {
+					ParallelRowScan.checkInterrupted(Thread.currentThread());
+					built = new OccupancyTimeline(trips);
+					occupancy = built;
 				}
 			}
 		}
-		return bikesInUse;
+		return built;
 	}
 	
 	/**
@@ -326,22 +523,10 @@ public class DataAnalysis {
 	 * @return all of the trip info for the longest trip
 	 */
 	public String longestTripByDistance() throws NullPointerException {
-		String tripInfo = null;
-		double longestTripDistance = 0;
-		int longestTrip = 0;
-		for (Trip t : trips) {
-			if (t.getStartLat() != -1.0 && t.getStartLong() != -1.0 &&
-					t.getEndLat() != -1.0 && t.getEndLong() != -1.0) {
-				double tripDistance = Math.sqrt(Math.pow((t.getStartLat()-t.getEndLat()), 2) +
-						Math.pow((t.getStartLong()-t.getEndLong()), 2));
-				if (tripDistance > longestTripDistance) {
-					longestTripDistance = tripDistance;
-					longestTrip = trips.indexOf(t);
-				}
-			}
-		}
-		tripInfo = trips.get(longestTrip).getAllTripData();
-		return tripInfo;
+		DistanceKernels.Summary distances = scanRows(
+				(from, to) -> DistanceKernels.summarize(trips, from, to),
+				(left, right) -> left.merge(right));
+		return trips.getTrip(distances.getArgMax()).getAllTripData();
 	}
 	
 	/**
@@ -350,27 +535,32 @@ public class DataAnalysis {
 	 * @param stationList is the list of stations to check
 	 * @return the number of trips
 	 */
-	public int tripsByStations(ArrayList<Station> stationList) throws NullPointerException {
+	public int tripsByStations(List<Station> stationList) throws NullPointerException {
+		OriginDestinationMatrix flows = getOriginDestinationMatrix();
 		int totalTrips = 0;
-		for (Trip t : trips) {
-			for (Station s : stationList) {
-				if (t.getStartStation() == s.getStationID()) {
-					totalTrips++;
-				}
-			}
-			for (Station s : stationList) {
-				if (t.getEndStation() == s.getStationID()) {
-					totalTrips++;
-				}
-			}
-			for (Station s: stationList) {
-				if (t.getEndStation() == s.getStationID() && 
-						t.getStartStation() == s.getStationID()) {
-					totalTrips--;
+		for (Station s : stationList) {
+			totalTrips += flows.getTotalTrips(s.getStationID());
+		}
+		return totalTrips;
+	}
+	
+	/**
+	 * The matrix is built the first time it is needed
+	 * @return the trip counts between every pair of stations
+	 */
+	public OriginDestinationMatrix getOriginDestinationMatrix() {
+		OriginDestinationMatrix built = flows;
+		if (built == null) {
+			synchronized (this) {
+				built = flows;
+				if (built == null) {
+					ParallelRowScan.checkInterrupted(Thread.currentThread());
+					built = new OriginDestinationMatrix(trips, directory);
+					flows = built;
 				}
 			}
 		}
-		return totalTrips;
+		return built;
 	}
 	
 	
@@ -403,75 +593,82 @@ public class DataAnalysis {
 	}
 	
 	/**
-	 * Creates a hash map for mapping stations
-	 * to their lattitude
-	 * @param stationList are the stations to map
-	 * @return a hash map of stations and their latitude
+	 * Looks for stations that are near to each other
+	 * Ensures that only stations with valid 
+	 * long/lat data are included
+	 * @return the number of station pairs no more than
+	 * 2 km apart
 	 */
-	private HashMap<Integer, Double> stationLatitudeMap(ArrayList<Station> stationList) {
-		stationLatitudeHashMap = new HashMap<Integer, Double>();
-		for (Station s : stations) {
-			outerloop:
-			for (Trip t : trips) {
-				stationLatitudeHashMap.put(s.getStationID(), -1.0);
-				if (t.getStartStation() == s.getStationID()) {
-					stationLatitudeHashMap.put(s.getStationID(), t.getStartLat());
-					break outerloop;
-				}
-			}
-		}
-		return stationLatitudeHashMap;
+	public int closeStations() {
+		return closeStations(CLOSE_STATION_KM);
 	}
 	
 	/**
-	 * Creates a hash map for mapping stations
-	 * to their longitude
-	 * @param stationList are the stations to map
-	 * @return a hash map of stations and their longitude
+	 * Looks for stations that are near to each other
+	 * Each pair is counted once
+	 * @param radiusKm is the largest separation in kilometres
+	 * @return the number of station pairs no more than
+	 * radiusKm apart
 	 */
-	private HashMap<Integer, Double> stationLongitudeMap(ArrayList<Station> stationList) {
-		stationLongitudeHashMap = new HashMap<Integer, Double>();
-		for (Station s : stationList) {
-			outerloop:
-			for (Trip t : trips) {
-				stationLongitudeHashMap.put(s.getStationID(), -1.0);
-				if (t.getStartStation() == s.getStationID()) {
-					stationLongitudeHashMap.put(s.getStationID(), t.getStartLong());
-					break outerloop;
-				} else {
-					stationLatitudeHashMap.put(s.getStationID(), -1.0);
-				}
-			}
+	public int closeStations(double radiusKm) {
+		return getStationGrid().countPairsWithin(radiusKm);
+	}
+	
+	/**
+	 * Finds the stations within a distance of a point
+	 * @param lat is the latitude of the point
+	 * @param lon is the longitude of the point
+	 * @param radiusKm is the search radius in kilometres
+	 * @return the stations found, nearest first
+	 */
+	public ArrayList<Station> stationsWithinRadius(double lat, double lon, double radiusKm) {
+		return stationsAt(getStationGrid().withinRadius(lat, lon, radiusKm));
+	}
+	
+	/**
+	 * Finds the stations closest to a point
+	 * @param lat is the latitude of the point
+	 * @param lon is the longitude of the point
+	 * @param k is the number of stations wanted
+	 * @return up to k stations, nearest first
+	 */
+	public ArrayList<Station> nearestStations(double lat, double lon, int k) {
+		return stationsAt(getStationGrid().nearest(lat, lon, k));
+	}
+	
+	private ArrayList<Station> stationsAt(int[] indexes) {
+		ArrayList<Station> found = new ArrayList<>();
+		for (int index : indexes) {
+			found.add(stations.get(index));
 		}
-		return stationLongitudeHashMap;
+		return found;
 	}
 	
 	/**
-	 * Looks for stations that are near to each other
-	 * Ensures that only stations with valid 
-	 * long/lat data are included
-	 * @return the number of stations with an average 
-	 * long/lat separation of less than .02
+	 * A station is placed at the start location of the first
+	 * trip that left it with location data
+	 * The grid is built the first time it is needed
+	 * @return the spatial index over all stations
 	 */
-	public int closeStations() {
-		int closeStationCount = 0;
-		for (Station s : stations) {
-			for (Station s2 : stations) {
-				if (stationLatitudeHashMap.get(s.getStationID()) != -1.0 && 
-						stationLatitudeHashMap.get(s2.getStationID()) != -1.0 && 
-						s.getStationID() != s2.getStationID()) {
-					double latDifference = Math.abs(stationLatitudeHashMap.get(s.getStationID()) - 
-							stationLatitudeHashMap.get(s2.getStationID()));
-					double longDifference = Math.abs(stationLongitudeHashMap.get(s.getStationID()) - 
-							stationLongitudeHashMap.get(s2.getStationID()));
-					double distance = (latDifference + longDifference) / 2;
-					if (distance <= .02) {
-						closeStationCount++;
+	public StationGrid getStationGrid() {
+		StationGrid built = stationGrid;
+		if (built == null) {
+			synchronized (this) {
+				built = stationGrid;
+				if (built == null) {
+					ParallelRowScan.checkInterrupted(Thread.currentThread());
+					double[] lats = new double[stations.size()];
+					double[] longs = new double[stations.size()];
+					for (int i = 0; i < stations.size(); i++) {
+						lats[i] = stationRegistry.getFirstDepartureLat(stations.get(i).getStationID());
+						longs[i] = stationRegistry.getFirstDepartureLong(stations.get(i).getStationID());
 					}
+					built = new StationGrid(lats, longs, CLOSE_STATION_KM);
+					stationGrid = built;
 				}
 			}
 		}
-		return closeStationCount / 2;
+		return built;
 	}
 	
 	/**
@@ -493,16 +690,8 @@ public class DataAnalysis {
 		int popularStartCount = 0;
 		int popularDestCount = 0;
 		for (Station s : stations) {
-			int destinationCount = 0;
-			int startCount = 0;
-			for (Trip t : trips) {
-				if (t.getEndStation() == s.getStationID()) {
-					destinationCount++;
-				}
-				if (t.getStartStation() == s.getStationID()) {
-					startCount++;
-				}
-			}
+			int destinationCount = stationTrips.countArrivals(s.getStationID());
+			int startCount = stationTrips.countDepartures(s.getStationID());
 			if (startCount < unpopularStartCount) {
 				unpopularStartCount = startCount;
 				unpopularStart = s.getStationName();
@@ -547,19 +736,14 @@ public class DataAnalysis {
 	 * @return is the date that was most popular
 	 */
 	public int popularDayInMonth(int monthInput) throws NullPointerException {
-		int[] daysInMonth = new int[31];
-		for (Trip t : trips) {
-			if (t.getStartMonth() == monthInput) {
-				daysInMonth[t.getStartDay() - 1] = daysInMonth[t.getStartDay() - 1] + 1;
-			}
-		}
-		int busyDay = 0;
-		for (int i = 1; i <=30; i++) {
+		long[] daysInMonth = calendar.countByDay(CalendarCube.ANY, monthInput, null, null);
+		int busyDay = 1;
+		for (int i = 2; i <= 31; i++) {
 			if (daysInMonth[busyDay] < daysInMonth[i]) {
 				busyDay = i;
 			}
 		}
-		return busyDay + 1;
+		return busyDay;
 	}
 	
 	/**
@@ -569,21 +753,30 @@ public class DataAnalysis {
 	 * @param departureThreshold the number to compare
 	 * arrivals at a station to in order to determine
 	 * whether or not they need maintenance
+	 * The list comes out in HashMap order of station ID
 	 * @return the list of station IDs that need maintenance
 	 */
 	public String stationMaintenanceCategories(int departureThreshold) throws NullPointerException {
 		String stationMaintenanceList = "";
-		HashMap<Integer, Integer> departures = new HashMap<Integer, Integer>();
-		for (Trip t : trips) {
-			Integer count = departures.get(t.getEndStation());
-			if (count == null) {
-			    departures.put(t.getEndStation(), 1);
+		HashMap<Integer, Integer> arrivals = scanRows((from, to) -> {
+			HashMap<Integer, Integer> part = new HashMap<Integer, Integer>();
+			for (int row = from; row < to; row++) {
+				Integer count = part.get(trips.getEndStation(row));
+				if (count == null) {
+				    part.put(trips.getEndStation(row), 1);
+				}
+				else {
+				    part.put(trips.getEndStation(row), count + 1);
+				}
 			}
-			else {
-			    departures.put(t.getEndStation(), count + 1);
+			return part;
+		}, (left, right) -> {
+			for (HashMap.Entry<Integer, Integer> entry : right.entrySet()) {
+				left.merge(entry.getKey(), entry.getValue(), Integer::sum);
 			}
-		}
-		for (HashMap.Entry<Integer, Integer> entry : departures.entrySet()) {
+			return left;
+		});
+		for (HashMap.Entry<Integer, Integer> entry : arrivals.entrySet()) {
 			if (entry.getValue() > departureThreshold) {
 				stationMaintenanceList += entry.getKey() + " ";
 			}
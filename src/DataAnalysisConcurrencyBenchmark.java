@@ -0,0 +1,125 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Runs a mix of queries against one shared DataAnalysis
+ * from 1, 2, 4 and 8 threads at once
+ * The first round starts on a fresh analysis so the threads
+ * race to build the lazy indexes
+ * Every answer is checked against the answers a separate
+ * analysis gave on one thread, and the queries per second and
+ * the speedup over one thread are reported for each thread count
+ * Scaling can only show up to the number of available cores
+ * Usage: java DataAnalysisConcurrencyBenchmark stationFile tripFile [queriesPerThread]
+ *
+ */
+public class DataAnalysisConcurrencyBenchmark {
+
+	private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+	private static final int WARMUP_ROUNDS = 5;
+
+	public static void main(String[] args) throws InterruptedException, ExecutionException {
+		String fileNameStations = args.length > 0 ? args[0] : "indego-stations-2017-10-20.csv";
+		String fileNameTrips = args.length > 1 ? args[1] : "indego-trips-2017-q3.csv";
+		int queriesPerThread = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+		List<Function<DataAnalysis, String>> queries = queryMix();
+		DataAnalysis reference = new DataAnalysis(fileNameStations, fileNameTrips);
+		String[] expected = new String[queries.size()];
+		for (int i = 0; i < queries.size(); i++) {
+			expected[i] = queries.get(i).apply(reference);
+		}
+
+		// a fresh analysis, so the threads race to build the lazy indexes
+		DataAnalysis shared = new DataAnalysis(fileNameStations, fileNameTrips);
+		int cores = Runtime.getRuntime().availableProcessors();
+		int maxThreads = THREAD_COUNTS[THREAD_COUNTS.length - 1];
+		int racedWrong = run(queries, expected, shared, maxThreads, queries.size()).wrong;
+		System.out.println(String.format("%d threads building the indexes at once: %s",
+				maxThreads, racedWrong == 0 ? "all answers match" : racedWrong + " WRONG ANSWERS"));
+		// untimed rounds so the timed ones run compiled code
+		for (int warmup = 0; warmup < WARMUP_ROUNDS; warmup++) {
+			run(queries, expected, shared, maxThreads, queriesPerThread);
+		}
+
+		double single = 0;
+		for (int threads : THREAD_COUNTS) {
+			Round round = run(queries, expected, shared, threads, queriesPerThread);
+			if (threads == 1) {
+				single = round.queriesPerSecond;
+			}
+			System.out.println(String.format("%d threads: %.0f queries/s, %.2fx one thread (%s)",
+					threads, round.queriesPerSecond, round.queriesPerSecond / single,
+					round.wrong == 0 ? "all answers match" : round.wrong + " WRONG ANSWERS"));
+		}
+		if (cores < maxThreads) {
+			System.out.println("Only " + cores + " core(s) available, so thread counts above "
+					+ cores + " show the cost of sharing, not scaling");
+		}
+	}
+
+	/**
+	 * The throughput and wrong answers of one timed round
+	 */
+	private static class Round {
+		private double queriesPerSecond;
+		private int wrong;
+	}
+
+	private static Round run(List<Function<DataAnalysis, String>> queries, String[] expected,
+			DataAnalysis shared, int threads, int queriesPerThread) throws InterruptedException, ExecutionException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Callable<Integer>> workers = new ArrayList<>();
+		for (int w = 0; w < threads; w++) {
+			int offset = w;
+			workers.add(() -> {
+				int wrong = 0;
+				for (int q = 0; q < queriesPerThread; q++) {
+					int query = (q + offset) % queries.size();
+					if (!expected[query].equals(queries.get(query).apply(shared))) {
+						wrong++;
+					}
+				}
+				return wrong;
+			});
+		}
+		Round round = new Round();
+		long start = System.nanoTime();
+		for (Future<Integer> result : pool.invokeAll(workers)) {
+			round.wrong += result.get();
+		}
+		round.queriesPerSecond = threads * queriesPerThread / ((System.nanoTime() - start) / 1e9);
+		pool.shutdown();
+		return round;
+	}
+
+	/**
+	 * Queries that between them read every index the analysis
+	 * keeps, including the lazily built ones
+	 */
+	private static List<Function<DataAnalysis, String>> queryMix() {
+		List<Function<DataAnalysis, String>> queries = new ArrayList<>();
+		queries.add(da -> Integer.toString(da.tripsByTripType("One Way", 2017)));
+		queries.add(da -> Integer.toString(da.stationsByStatus("Active", 2016)));
+		queries.add(da -> da.tripsByDestination("Philadelphia Zoo"));
+		queries.add(da -> Integer.toString(da.tripsByPassholderTypeMonth("Indego30")));
+		queries.add(da -> Integer.toString(da.mostTraveledBikeByTime()));
+		queries.add(da -> da.tripsWithinInterval("0:00", "5:00"));
+		queries.add(da -> Integer.toString(da.bikesInUseByDateTime("9/15/2017", "7:00")));
+		queries.add(da -> da.longestTripByDistance());
+		queries.add(da -> Integer.toString(da.tripsByStations(da.stationsUniqueStartDate())));
+		queries.add(da -> Integer.toString(da.popularDayInMonth(8)));
+		queries.add(da -> Integer.toString(da.closeStations()));
+		queries.add(da -> da.topOrBottomStation("least", "destination"));
+		queries.add(da -> da.stationMaintenanceCategories(150));
+		queries.add(da -> Integer.toString(da.getTripBitmapIndex()
+				.passholderType("Indego30").cardinality()));
+		return queries;
+	}
+}
@@ -0,0 +1,194 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class keeps a current DataAnalysis that can be replaced
+ * with one built from new files while queries keep running
+ * The new analysis and its indexes are built on a background
+ * thread and then swapped in with a single reference update
+ * Queries take the current snapshot and keep using it until they
+ * finish, so they never see a half-built analysis, and an old
+ * snapshot is freed by the garbage collector once the last query
+ * using it lets go
+ * For the last reload it keeps how long the request waited
+ * for the background thread, how long the build took, and the
+ * total time from the request until the new snapshot was visible
+ *
+ */
+public class DataAnalysisReloader {
+
+	private final AtomicReference<Snapshot> current;
+	private final boolean parallel;
+	private final ExecutorService builder;
+	private volatile long lastQueueNanos;
+	private volatile long lastBuildNanos;
+	private volatile long lastReloadNanos;
+	private volatile int reloads;
+
+	/**
+	 * Reads the first snapshot before returning
+	 * @param fileNameStation is the file path for the station file
+	 * @param fileNameTrip is the file path for the trip file
+	 * @param parallel is whether each analysis splits scans across cores
+	 */
+	public DataAnalysisReloader(String fileNameStation, String fileNameTrip, boolean parallel)
+			throws FileNotFoundException {
+		this.parallel = parallel;
+		this.current = new AtomicReference<Snapshot>(build(fileNameStation, fileNameTrip));
+		this.builder = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task, "data-analysis-reload");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Queries that need several answers from the same data
+	 * should call this once and keep the result
+	 * @return the analysis queries should run against now
+	 */
+	public DataAnalysis current() {
+		return current.get().analysis;
+	}
+
+	/**
+	 * Reads the files the current snapshot came from again
+	 * @return the analysis that was swapped in
+	 */
+	public Future<DataAnalysis> reload() {
+		Snapshot snapshot = current.get();
+		return reload(snapshot.fileNameStation, snapshot.fileNameTrip);
+	}
+
+	/**
+	 * Builds an analysis of new files in the background and swaps
+	 * it in once it is ready
+	 * If the files cannot be read the current snapshot is kept and
+	 * the future fails with the FileNotFoundException
+	 * @param fileNameStation is the file path for the station file
+	 * @param fileNameTrip is the file path for the trip file
+	 * @return the analysis that was swapped in
+	 */
+	public Future<DataAnalysis> reload(String fileNameStation, String fileNameTrip) {
+		long requested = System.nanoTime();
+		return builder.submit(() -> {
+			long start = System.nanoTime();
+			Snapshot next = build(fileNameStation, fileNameTrip);
+			long built = System.nanoTime();
+			current.set(next);
+			long swapped = System.nanoTime();
+			lastQueueNanos = start - requested;
+			lastBuildNanos = built - start;
+			lastReloadNanos = swapped - requested;
+			reloads++;
+			return next.analysis;
+		});
+	}
+
+	/**
+	 * Starts a reload only when a file of the current snapshot
+	 * has a new size or last-modified time
+	 * @return the reload, or null when nothing changed
+	 */
+	public Future<DataAnalysis> reloadIfChanged() {
+		Snapshot snapshot = current.get();
+		if (snapshot.isCurrent()) {
+			return null;
+		}
+		return reload(snapshot.fileNameStation, snapshot.fileNameTrip);
+	}
+
+	/**
+	 * @return how long the last reload waited for the background
+	 * thread before it started, in nanoseconds
+	 */
+	public long getLastQueueNanos() {
+		return lastQueueNanos;
+	}
+
+	/**
+	 * @return how long the last reload spent reading and indexing, in nanoseconds
+	 */
+	public long getLastBuildNanos() {
+		return lastBuildNanos;
+	}
+
+	/**
+	 * For reloadIfChanged the request is made when the change
+	 * is noticed
+	 * @return how long the last reload took from the request until
+	 * queries could see the new snapshot, in nanoseconds
+	 */
+	public long getLastReloadNanos() {
+		return lastReloadNanos;
+	}
+
+	/**
+	 * @return the number of reloads swapped in so far
+	 */
+	public int getReloadCount() {
+		return reloads;
+	}
+
+	/**
+	 * Stops the background thread once any reload in progress is done
+	 */
+	public void shutdown() {
+		builder.shutdown();
+	}
+
+	private Snapshot build(String fileNameStation, String fileNameTrip) throws FileNotFoundException {
+		File stationFile = new File(fileNameStation);
+		File tripFile = new File(fileNameTrip);
+		long stationStamp = stationFile.lastModified();
+		long stationLength = stationFile.length();
+		long tripStamp = tripFile.lastModified();
+		long tripLength = tripFile.length();
+		DataAnalysis analysis = DataAnalysis.load(fileNameStation, fileNameTrip, parallel);
+		// the indexes queries build on first use are built here instead,
+		// so the first queries after a swap do not stall
+		analysis.getTripBitmapIndex();
+		analysis.getTripTimeIndex();
+		analysis.getBikeTripIndex();
+		analysis.getOccupancyTimeline();
+		analysis.getOriginDestinationMatrix();
+		analysis.getStationGrid();
+		return new Snapshot(analysis, fileNameStation, fileNameTrip,
+				stationStamp, stationLength, tripStamp, tripLength);
+	}
+
+	/**
+	 * An analysis and the state of the files it was built from
+	 */
+	private static final class Snapshot {
+		private final DataAnalysis analysis;
+		private final String fileNameStation;
+		private final String fileNameTrip;
+		private final long stationStamp;
+		private final long stationLength;
+		private final long tripStamp;
+		private final long tripLength;
+
+		Snapshot(DataAnalysis analysis, String fileNameStation, String fileNameTrip,
+				long stationStamp, long stationLength, long tripStamp, long tripLength) {
+			this.analysis = analysis;
+			this.fileNameStation = fileNameStation;
+			this.fileNameTrip = fileNameTrip;
+			this.stationStamp = stationStamp;
+			this.stationLength = stationLength;
+			this.tripStamp = tripStamp;
+			this.tripLength = tripLength;
+		}
+
+		boolean isCurrent() {
+			File stationFile = new File(fileNameStation);
+			File tripFile = new File(fileNameTrip);
+			return stationFile.lastModified() == stationStamp && stationFile.length() == stationLength &&
+					tripFile.lastModified() == tripStamp && tripFile.length() == tripLength;
+		}
+	}
+}
@@ -0,0 +1,459 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * This class saves parsed trip and station data in a compact
+ * binary snapshot next to the source file, and loads it back
+ * through a memory-mapped path with no text parsing
+ *
+ * A snapshot starts with a header holding a format version and the
+ * size, modification time and CRC32 checksum of its source file,
+ * taken before the file was parsed
+ * If the size differs, or the time differs and the checksum no
+ * longer matches, the snapshot is stale and is not used
+ * A snapshot that is damaged and cannot be decoded is treated
+ * as stale too
+ *
+ * Trip snapshots store each field as its own column:
+ * numbers as int, long and double arrays, start and end times
+ * as epoch seconds, and the two category fields as codes into
+ * a small table of distinct values that is stored with the file
+ * and mapped onto the shared StringDictionary when loaded
+ *
+ */
+public class DataSnapshot {
+
+	public static final String EXTENSION = ".snap";
+	public static final int VERSION = 1;
+
+	private static final int MAGIC = 0x49444753;
+	private static final int KIND_TRIPS = 1;
+	private static final int KIND_STATIONS = 2;
+	private static final int HEADER_SIZE = 40;
+	private static final int MODIFIED_OFFSET = 24;
+	private static final int TRIP_ROW_BYTES = 80;
+	private static final int STATION_ROW_BYTES = 16;
+	private static final long CHECKSUM_WINDOW = 1L << 28;
+
+	/**
+	 * @return the path of the snapshot for a source file
+	 */
+	public static String snapshotName(String sourceFileName) {
+		return sourceFileName + EXTENSION;
+	}
+
+	/**
+	 * The size, modification time and checksum of a source file
+	 * Take it before parsing the file and save the snapshot with it,
+	 * so rows parsed from a file that changed meanwhile are never
+	 * saved as matching the new file
+	 */
+	public static final class Source {
+		private final long size;
+		private final long modified;
+		private final long checksum;
+
+		private Source(long size, long modified, long checksum) {
+			this.size = size;
+			this.modified = modified;
+			this.checksum = checksum;
+		}
+	}
+
+	/**
+	 * Reads the size and time of a file, then its checksum
+	 * @param sourceFileName is the file about to be parsed
+	 * @return the state of the file
+	 */
+	public static Source source(String sourceFileName) throws IOException {
+		File source = new File(sourceFileName);
+		long size = source.length();
+		long modified = source.lastModified();
+		return new Source(size, modified, checksum(source));
+	}
+
+	/**
+	 * Loads trips from the snapshot of a trip file
+	 * The columns are copied straight into a table
+	 * @param sourceFileName is the file path for the trip file
+	 * @return the trips in file order, or null if there is no
+	 * usable snapshot for the file as it is now
+	 */
+	public static TripTable readTrips(String sourceFileName) throws IOException {
+		File snapshot = new File(snapshotName(sourceFileName));
+		if (!snapshot.isFile()) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ)) {
+			int rows = checkHeader(channel, KIND_TRIPS, snapshot, new File(sourceFileName));
+			if (rows < 0) {
+				return null;
+			}
+			return decodeTrips(channel, rows);
+		} catch (RuntimeException re) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the trips, or null if the sizes and codes
+	 * in the snapshot do not fit the file
+	 */
+	private static TripTable decodeTrips(FileChannel channel, int rows) throws IOException {
+		long position = HEADER_SIZE;
+		ByteBuffer table = map(channel, position, channel.size() - position);
+		String[] categories = readStrings(table);
+		position = align(position + table.position());
+		if (rows > (channel.size() - position) / TRIP_ROW_BYTES) {
+			return null;
+		}
+
+		TripTable trips = new TripTable(rows);
+		int[] routeCategory = trips.tripRouteCategoryColumn();
+		int[] passholderType = trips.passholderTypeColumn();
+		position = readColumn(channel, position, trips.tripIDColumn(), rows);
+		position = readColumn(channel, position, trips.durationColumn(), rows);
+		position = readColumn(channel, position, trips.startTimeColumn(), rows);
+		position = readColumn(channel, position, trips.endTimeColumn(), rows);
+		position = readColumn(channel, position, trips.startStationColumn(), rows);
+		position = readColumn(channel, position, trips.startLatColumn(), rows);
+		position = readColumn(channel, position, trips.startLongColumn(), rows);
+		position = readColumn(channel, position, trips.endStationColumn(), rows);
+		position = readColumn(channel, position, trips.endLatColumn(), rows);
+		position = readColumn(channel, position, trips.endLongColumn(), rows);
+		position = readColumn(channel, position, trips.bikeIDColumn(), rows);
+		position = readColumn(channel, position, trips.planDurationColumn(), rows);
+		position = readColumn(channel, position, routeCategory, rows);
+		position = readColumn(channel, position, passholderType, rows);
+
+		if (!codesFit(routeCategory, rows, categories.length)
+				|| !codesFit(passholderType, rows, categories.length)) {
+			return null;
+		}
+		int[] sharedCodes = new int[categories.length];
+		for (int c = 0; c < categories.length; c++) {
+			sharedCodes[c] = StringDictionary.shared().encode(categories[c]);
+		}
+		for (int i = 0; i < rows; i++) {
+			routeCategory[i] = sharedCodes[routeCategory[i]];
+			passholderType[i] = sharedCodes[passholderType[i]];
+		}
+		trips.setSize(rows);
+		return trips;
+	}
+
+	/**
+	 * Saves trips as the snapshot of a trip file
+	 * @param sourceFileName is the file path the trips were read from
+	 * @param source is the state of the file before it was parsed
+	 * @param trips are the trips in file order
+	 */
+	public static void writeTrips(String sourceFileName, Source source, TripTable trips) throws IOException {
+		int rows = trips.size();
+		ArrayList<String> categories = new ArrayList<String>();
+		int[] routeCategory = new int[rows];
+		int[] passholderType = new int[rows];
+		for (int i = 0; i < rows; i++) {
+			routeCategory[i] = code(categories, trips.getTripRouteCategory(i));
+			passholderType[i] = code(categories, trips.getPassholderType(i));
+		}
+
+		File temporary = new File(snapshotName(sourceFileName) + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			writeHeader(channel, KIND_TRIPS, source, rows);
+			long position = writeStrings(channel, HEADER_SIZE, categories);
+			position = writeColumn(channel, position, trips.tripIDColumn(), rows);
+			position = writeColumn(channel, position, trips.durationColumn(), rows);
+			position = writeColumn(channel, position, trips.startTimeColumn(), rows);
+			position = writeColumn(channel, position, trips.endTimeColumn(), rows);
+			position = writeColumn(channel, position, trips.startStationColumn(), rows);
+			position = writeColumn(channel, position, trips.startLatColumn(), rows);
+			position = writeColumn(channel, position, trips.startLongColumn(), rows);
+			position = writeColumn(channel, position, trips.endStationColumn(), rows);
+			position = writeColumn(channel, position, trips.endLatColumn(), rows);
+			position = writeColumn(channel, position, trips.endLongColumn(), rows);
+			position = writeColumn(channel, position, trips.bikeIDColumn(), rows);
+			position = writeColumn(channel, position, trips.planDurationColumn(), rows);
+			position = writeColumn(channel, position, routeCategory, rows);
+			position = writeColumn(channel, position, passholderType, rows);
+		}
+		Files.move(temporary.toPath(), new File(snapshotName(sourceFileName)).toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Loads stations from the snapshot of a station file
+	 * @param sourceFileName is the file path for the station file
+	 * @return the stations in file order, or null if there is no
+	 * usable snapshot for the file as it is now
+	 */
+	public static ArrayList<Station> readStations(String sourceFileName) throws IOException {
+		File snapshot = new File(snapshotName(sourceFileName));
+		if (!snapshot.isFile()) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ)) {
+			int rows = checkHeader(channel, KIND_STATIONS, snapshot, new File(sourceFileName));
+			if (rows < 0) {
+				return null;
+			}
+			ByteBuffer body = map(channel, HEADER_SIZE, channel.size() - HEADER_SIZE);
+			if (rows > body.remaining() / STATION_ROW_BYTES) {
+				return null;
+			}
+			// every row is decoded before any station is made, so a
+			// damaged snapshot adds nothing to the shared dictionary
+			int[] stationIDs = new int[rows];
+			String[][] fields = new String[rows][];
+			for (int i = 0; i < rows; i++) {
+				stationIDs[i] = body.getInt();
+				fields[i] = new String[] {readString(body), readString(body), readString(body)};
+			}
+			ArrayList<Station> stations = new ArrayList<Station>(rows);
+			for (int i = 0; i < rows; i++) {
+				stations.add(new Station(stationIDs[i], fields[i][0], fields[i][1], fields[i][2]));
+			}
+			return stations;
+		} catch (RuntimeException re) {
+			return null;
+		}
+	}
+
+	/**
+	 * Saves stations as the snapshot of a station file
+	 * @param sourceFileName is the file path the stations were read from
+	 * @param source is the state of the file before it was parsed
+	 * @param stations are the stations in file order
+	 */
+	public static void writeStations(String sourceFileName, Source source, ArrayList<Station> stations)
+			throws IOException {
+		File temporary = new File(snapshotName(sourceFileName) + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			writeHeader(channel, KIND_STATIONS, source, stations.size());
+			long position = HEADER_SIZE;
+			for (Station s : stations) {
+				byte[] name = s.getStationName().getBytes(StandardCharsets.UTF_8);
+				byte[] goLiveDate = s.getGoLiveDate().getBytes(StandardCharsets.UTF_8);
+				byte[] status = s.getStatus().getBytes(StandardCharsets.UTF_8);
+				ByteBuffer row = ByteBuffer.allocate(16 + name.length + goLiveDate.length + status.length)
+						.order(ByteOrder.LITTLE_ENDIAN);
+				row.putInt(s.getStationID());
+				row.putInt(name.length).put(name);
+				row.putInt(goLiveDate.length).put(goLiveDate);
+				row.putInt(status.length).put(status);
+				row.flip();
+				position += writeFully(channel, position, row);
+			}
+		}
+		Files.move(temporary.toPath(), new File(snapshotName(sourceFileName)).toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Computes the CRC32 checksum of a whole file
+	 * @param file is the file to check
+	 * @return the checksum
+	 */
+	public static long checksum(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			for (long position = 0; position < size; position += CHECKSUM_WINDOW) {
+				crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+						Math.min(CHECKSUM_WINDOW, size - position)));
+			}
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Header layout: magic, version, kind, row count,
+	 * source size, source modification time, source checksum
+	 */
+	private static void writeHeader(FileChannel channel, int kind, Source source, int rows) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(kind).putInt(rows);
+		header.putLong(source.size).putLong(source.modified).putLong(source.checksum);
+		header.flip();
+		writeFully(channel, 0, header);
+	}
+
+	/**
+	 * Checks the header against the source file as it is now
+	 * A matching size and modification time is trusted as is;
+	 * if only the time changed the checksum decides, and when it
+	 * matches the new time is saved so later loads skip the checksum
+	 * @return the number of rows, or -1 if the snapshot is stale
+	 */
+	private static int checkHeader(FileChannel channel, int kind, File snapshot, File source) throws IOException {
+		if (channel.size() < HEADER_SIZE) {
+			return -1;
+		}
+		ByteBuffer header = map(channel, 0, HEADER_SIZE);
+		if (header.getInt() != MAGIC || header.getInt() != VERSION
+				|| header.getInt() != kind) {
+			return -1;
+		}
+		int rows = header.getInt();
+		long sourceSize = header.getLong();
+		long sourceModified = header.getLong();
+		long sourceChecksum = header.getLong();
+		if (!source.isFile() || source.length() != sourceSize) {
+			return -1;
+		}
+		long modified = source.lastModified();
+		if (modified != sourceModified) {
+			if (checksum(source) != sourceChecksum) {
+				return -1;
+			}
+			saveModified(snapshot, modified);
+		}
+		return rows;
+	}
+
+	/**
+	 * Updates the source modification time in a snapshot header
+	 * A snapshot that cannot be written keeps the old time
+	 */
+	private static void saveModified(File snapshot, long modified) {
+		ByteBuffer time = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+		time.putLong(modified).flip();
+		try (FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.WRITE)) {
+			writeFully(channel, MODIFIED_OFFSET, time);
+		} catch (IOException ioe) {
+			// the checksum is simply read again on the next load
+		}
+	}
+
+	/**
+	 * @return whether every code is a valid index into a table of the given size
+	 */
+	private static boolean codesFit(int[] codes, int rows, int tableSize) {
+		for (int i = 0; i < rows; i++) {
+			if (codes[i] < 0 || codes[i] >= tableSize) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int code(ArrayList<String> values, String value) {
+		int code = values.indexOf(value);
+		if (code < 0) {
+			code = values.size();
+			values.add(value);
+		}
+		return code;
+	}
+
+	private static long writeStrings(FileChannel channel, long position, ArrayList<String> values) throws IOException {
+		int size = 4;
+		ArrayList<byte[]> encoded = new ArrayList<byte[]>();
+		for (String value : values) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			encoded.add(bytes);
+			size += 4 + bytes.length;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(encoded.size());
+		for (byte[] bytes : encoded) {
+			buffer.putInt(bytes.length).put(bytes);
+		}
+		buffer.flip();
+		return align(position + writeFully(channel, position, buffer));
+	}
+
+	private static String[] readStrings(ByteBuffer buffer) {
+		int count = buffer.getInt();
+		if (count < 0 || count > buffer.remaining() / 4) {
+			throw new IllegalStateException("string table of " + count + " entries does not fit the snapshot");
+		}
+		String[] values = new String[count];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = readString(buffer);
+		}
+		return values;
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			throw new IllegalStateException("string of " + length + " bytes does not fit the snapshot");
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static long writeColumn(FileChannel channel, long position, int[] column, int rows) throws IOException {
+		MappedByteBuffer buffer = mapForWrite(channel, position, 4L * rows);
+		buffer.asIntBuffer().put(column, 0, rows);
+		return align(position + 4L * rows);
+	}
+
+	private static long writeColumn(FileChannel channel, long position, long[] column, int rows) throws IOException {
+		MappedByteBuffer buffer = mapForWrite(channel, position, 8L * rows);
+		buffer.asLongBuffer().put(column, 0, rows);
+		return align(position + 8L * rows);
+	}
+
+	private static long writeColumn(FileChannel channel, long position, double[] column, int rows) throws IOException {
+		MappedByteBuffer buffer = mapForWrite(channel, position, 8L * rows);
+		buffer.asDoubleBuffer().put(column, 0, rows);
+		return align(position + 8L * rows);
+	}
+
+	private static long readColumn(FileChannel channel, long position, int[] column, int rows) throws IOException {
+		map(channel, position, 4L * rows).asIntBuffer().get(column, 0, rows);
+		return align(position + 4L * rows);
+	}
+
+	private static long readColumn(FileChannel channel, long position, long[] column, int rows) throws IOException {
+		map(channel, position, 8L * rows).asLongBuffer().get(column, 0, rows);
+		return align(position + 8L * rows);
+	}
+
+	private static long readColumn(FileChannel channel, long position, double[] column, int rows) throws IOException {
+		map(channel, position, 8L * rows).asDoubleBuffer().get(column, 0, rows);
+		return align(position + 8L * rows);
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	private static MappedByteBuffer mapForWrite(FileChannel channel, long position, long size) throws IOException {
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	private static int writeFully(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+		int written = 0;
+		while (buffer.hasRemaining()) {
+			written += channel.write(buffer, position + written);
+		}
+		return written;
+	}
+
+	/**
+	 * Columns start on 8 byte boundaries
+	 */
+	private static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+}
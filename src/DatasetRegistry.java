@@ -0,0 +1,230 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * This class makes sure each station and trip file is only read
+ * once per process, however many analyses are built from it
+ * Loaded data is keyed by the file's canonical path, size and
+ * last-modified time, so a file that changes on disk is read again
+ * The registry only holds weak references, so once the last
+ * consumer lets go of a dataset the garbage collector can free it
+ * Files are read outside the registry lock, so a slow read only
+ * holds up the consumers waiting for that same file
+ * Everything handed out is shared, so station lists are handed
+ * out read-only, and trip tables cannot be changed once built
+ *
+ */
+public final class DatasetRegistry {
+
+	private static final HashMap<Key, Entry> CACHE = new HashMap<Key, Entry>();
+	private static final HashMap<Key, CompletableFuture<Object>> LOADING =
+			new HashMap<Key, CompletableFuture<Object>>();
+	private static final ReferenceQueue<Object> RELEASED = new ReferenceQueue<Object>();
+	private static int loads;
+
+	private DatasetRegistry() {
+	}
+
+	/**
+	 * @param fileName is the file path for the station file
+	 * @return the shared, read-only stations read from the file
+	 */
+	@SuppressWarnings("unchecked")
+	public static List<Station> stations(String fileName) throws FileNotFoundException {
+		return (List<Station>) get(Kind.STATIONS, fileName);
+	}
+
+	/**
+	 * @param fileName is the file path for the trip file
+	 * @return the shared trips read from the file
+	 */
+	public static TripTable trips(String fileName) throws FileNotFoundException {
+		return (TripTable) get(Kind.TRIPS, fileName);
+	}
+
+	/**
+	 * @return the number of datasets still held by some consumer
+	 */
+	public static synchronized int size() {
+		expunge();
+		int live = 0;
+		for (Entry entry : CACHE.values()) {
+			if (entry.get() != null) {
+				live++;
+			}
+		}
+		return live;
+	}
+
+	/**
+	 * @return the number of times a file has been read
+	 */
+	public static synchronized int getLoadCount() {
+		return loads;
+	}
+
+	/**
+	 * Forgets every dataset, so the next request reads its file again
+	 * Consumers that already hold a dataset keep using it
+	 */
+	public static synchronized void clear() {
+		CACHE.clear();
+	}
+
+	/**
+	 * The registry is only locked to look up and store entries
+	 * A file is read outside the lock by the first consumer to ask
+	 * for it, and consumers asking for the same file meanwhile wait
+	 * for that read, so other files can be loaded at the same time
+	 */
+	private static Object get(Kind kind, String fileName) throws FileNotFoundException {
+		Key key = Key.of(kind, fileName);
+		CompletableFuture<Object> load;
+		boolean reader = false;
+		synchronized (DatasetRegistry.class) {
+			expunge();
+			Entry cached = CACHE.get(key);
+			Object data = cached == null ? null : cached.get();
+			if (data != null) {
+				return data;
+			}
+			load = LOADING.get(key);
+			if (load == null) {
+				load = new CompletableFuture<Object>();
+				LOADING.put(key, load);
+				reader = true;
+			}
+		}
+		if (!reader) {
+			return await(load);
+		}
+
+		Object data;
+		try {
+			if (kind == Kind.STATIONS) {
+				data = Collections.unmodifiableList(new StationReader(fileName).getEachStation());
+			} else {
+				data = new TripReader(fileName).getTripTable();
+			}
+		} catch (Throwable t) {
+			synchronized (DatasetRegistry.class) {
+				LOADING.remove(key);
+			}
+			load.completeExceptionally(t);
+			throw t;
+		}
+		synchronized (DatasetRegistry.class) {
+			Iterator<Key> keys = CACHE.keySet().iterator();
+			while (keys.hasNext()) {
+				Key old = keys.next();
+				if (old.kind == kind && old.path.equals(key.path)) {
+					keys.remove();
+				}
+			}
+			loads++;
+			CACHE.put(key, new Entry(key, data));
+			LOADING.remove(key);
+		}
+		load.complete(data);
+		return data;
+	}
+
+	/**
+	 * Waits for another consumer's read of the same file
+	 */
+	private static Object await(CompletableFuture<Object> load) throws FileNotFoundException {
+		try {
+			return load.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof FileNotFoundException) {
+				throw (FileNotFoundException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw (RuntimeException) cause;
+		}
+	}
+
+	/**
+	 * Drops the entries whose datasets have been collected
+	 */
+	private static void expunge() {
+		Object released;
+		while ((released = RELEASED.poll()) != null) {
+			Entry entry = (Entry) released;
+			if (CACHE.get(entry.key) == entry) {
+				CACHE.remove(entry.key);
+			}
+		}
+	}
+
+	private enum Kind {
+		STATIONS, TRIPS
+	}
+
+	/**
+	 * A weak reference that remembers which key it was stored under
+	 */
+	private static class Entry extends WeakReference<Object> {
+
+		private Key key;
+
+		private Entry(Key key, Object data) {
+			super(data, RELEASED);
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Identifies one version of one file
+	 */
+	private static class Key {
+
+		private Kind kind;
+		private String path;
+		private long size;
+		private long modified;
+
+		private static Key of(Kind kind, String fileName) throws FileNotFoundException {
+			File file = new File(fileName);
+			if (!file.isFile()) {
+				throw new FileNotFoundException(fileName);
+			}
+			Key key = new Key();
+			key.kind = kind;
+			try {
+				key.path = file.getCanonicalPath();
+			} catch (IOException e) {
+				key.path = file.getAbsolutePath();
+			}
+			key.size = file.length();
+			key.modified = file.lastModified();
+			return key;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key that = (Key) other;
+			return kind == that.kind && path.equals(that.path) &&
+					size == that.size && modified == that.modified;
+		}
+
+		@Override
+		public int hashCode() {
+			return (kind.hashCode() * 31 + path.hashCode()) * 31 + Long.hashCode(size ^ modified);
+		}
+	}
+}
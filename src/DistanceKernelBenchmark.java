@@ -0,0 +1,136 @@
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+
+/**
+ * Compares the distance kernels, which read the precomputed
+ * distance column in one pass, with loops that work out each
+ * trip's Haversine distance from its coordinates again and make
+ * a separate pass for each figure
+ * It checks that both give the same answers and reports how
+ * many trips per second each gets through
+ * The summary pass is timed on the plain kernel and, when it is
+ * loaded, on the SIMD kernel, whose sum may differ in the last bits
+ * Usage: java DistanceKernelBenchmark tripFile [rounds]
+ * For the SIMD kernel, compile src-vector as well and run with
+ * java --add-modules jdk.incubator.vector DistanceKernelBenchmark ...
+ *
+ */
+public class DistanceKernelBenchmark {
+
+	public static void main(String[] args) throws FileNotFoundException {
+		String fileNameTrips = args.length > 0 ? args[0] : "indego-trips-2017-q3.csv";
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		TripTable table = new TripReader(fileNameTrips, TripReader.Mode.PARALLEL).getTripTable();
+		int size = table.size();
+		StationDirectory directory = new StationDirectory(table);
+		int[] slots = new int[size];
+		for (int row = 0; row < size; row++) {
+			slots[row] = directory.slotOf(table.getStartStation(row));
+		}
+
+		for (int round = 1; round <= rounds; round++) {
+			long start = System.nanoTime();
+			double[] loop = scalarLoop(table);
+			double loopSeconds = (System.nanoTime() - start) / 1e9;
+
+			start = System.nanoTime();
+			DistanceKernels.Summary summary = DistanceKernels.summarizeScalar(table.distanceColumn(), 0, size);
+			double[] kernel = {summary.getMax(), summary.getSum(), summary.getArgMax(), summary.getCount()};
+			double kernelSeconds = (System.nanoTime() - start) / 1e9;
+
+			String vector = "SIMD kernel not loaded";
+			if (DistanceKernels.isVectorized()) {
+				start = System.nanoTime();
+				DistanceKernels.Summary simd = DistanceKernels.summarize(table, 0, size);
+				double vectorSeconds = (System.nanoTime() - start) / 1e9;
+				boolean sameSimd = simd.getMax() == summary.getMax() && simd.getArgMax() == summary.getArgMax() &&
+						simd.getCount() == summary.getCount() &&
+						Math.abs(simd.getSum() - summary.getSum()) <= 1e-9 * Math.abs(summary.getSum());
+				vector = String.format("SIMD kernel %.1f M trips/s (%s)", size / vectorSeconds / 1e6,
+						sameSimd ? "same result" : "DIFFERENT RESULT");
+			}
+
+			start = System.nanoTime();
+			double[] loopGroups = groupedLoop(table, slots, directory.size());
+			double loopGroupSeconds = (System.nanoTime() - start) / 1e9;
+
+			start = System.nanoTime();
+			double[] sums = new double[directory.size()];
+			int[] counts = new int[directory.size()];
+			double[] maxima = new double[directory.size()];
+			DistanceKernels.grouped(table, slots, sums, counts, maxima);
+			double kernelGroupSeconds = (System.nanoTime() - start) / 1e9;
+
+			boolean same = Arrays.equals(loop, kernel) &&
+					Arrays.equals(loopGroups, flatten(sums, counts, maxima));
+			System.out.println(String.format(
+					"Round %d: max/sum/argmax/count loops %.1f M trips/s, kernel %.1f M trips/s, %s; "
+					+ "grouped loop %.1f M trips/s, kernel %.1f M trips/s (%s)",
+					round, size / loopSeconds / 1e6, size / kernelSeconds / 1e6, vector,
+					size / loopGroupSeconds / 1e6, size / kernelGroupSeconds / 1e6,
+					same ? "same result" : "DIFFERENT RESULT"));
+		}
+	}
+
+	/**
+	 * Runs max, sum, argmax and count the way the analyses
+	 * used to, one pass each
+	 */
+	private static double[] scalarLoop(TripTable trips) {
+		double longest = 0.0;
+		double total = 0.0;
+		double argLongest = 0.0;
+		int longestRow = 0;
+		int located = 0;
+		for (int pass = 0; pass < 4; pass++) {
+			for (int row = 0; row < trips.size(); row++) {
+				if (trips.getStartLat(row) != -1.0 && trips.getStartLong(row) != -1.0 &&
+						trips.getEndLat(row) != -1.0 && trips.getEndLong(row) != -1.0) {
+					double distance = StationGrid.haversine(trips.getStartLat(row), trips.getStartLong(row),
+							trips.getEndLat(row), trips.getEndLong(row));
+					if (pass == 0) {
+						longest = Math.max(longest, distance);
+					} else if (pass == 1) {
+						total += distance;
+					} else if (pass == 2 && distance > argLongest) {
+						argLongest = distance;
+						longestRow = row;
+					} else if (pass == 3) {
+						located++;
+					}
+				}
+			}
+		}
+		return new double[] {longest, total, longestRow, located};
+	}
+
+	private static double[] groupedLoop(TripTable trips, int[] slots, int groups) {
+		double[] sums = new double[groups];
+		int[] counts = new int[groups];
+		double[] maxima = new double[groups];
+		for (int row = 0; row < trips.size(); row++) {
+			if (trips.getStartLat(row) != -1.0 && trips.getStartLong(row) != -1.0 &&
+					trips.getEndLat(row) != -1.0 && trips.getEndLong(row) != -1.0) {
+				double distance = StationGrid.haversine(trips.getStartLat(row), trips.getStartLong(row),
+						trips.getEndLat(row), trips.getEndLong(row));
+				sums[slots[row]] += distance;
+				counts[slots[row]]++;
+				if (distance > maxima[slots[row]]) {
+					maxima[slots[row]] = distance;
+				}
+			}
+		}
+		return flatten(sums, counts, maxima);
+	}
+
+	private static double[] flatten(double[] sums, int[] counts, double[] maxima) {
+		double[] all = new double[sums.length * 3];
+		for (int g = 0; g < sums.length; g++) {
+			all[3 * g] = sums[g];
+			all[3 * g + 1] = counts[g];
+			all[3 * g + 2] = maxima[g];
+		}
+		return all;
+	}
+}
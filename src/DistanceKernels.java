@@ -0,0 +1,183 @@
+/**
+ * This class holds the tight loops behind the trip distance figures
+ * They read the trip table's distance column, which holds each
+ * trip's Haversine distance in kilometres worked out at load, so
+ * no trigonometry is repeated here
+ * Trips missing coordinates have a NaN distance and are left out
+ * The longest distance, the row it belongs to, the total and the
+ * count come out of one pass over the column
+ * A tie for the longest distance goes to the earlier trip
+ * The summary pass has a SIMD version in src-vector, built on the
+ * jdk.incubator.vector module
+ * It is used when its class and the module are on hand at run time,
+ * and this plain loop is used otherwise or when the system property
+ * distance.scalar is true
+ *
+ */
+public final class DistanceKernels {
+
+	/**
+	 * A summary pass that can stand in for the plain loop
+	 */
+	interface SummaryKernel {
+		Summary summarize(double[] distances, int from, int to);
+	}
+
+	private static final SummaryKernel VECTOR = vectorKernel();
+
+	private DistanceKernels() {
+	}
+
+	/**
+	 * Loads the SIMD kernel by name, since it only compiles and
+	 * runs with --add-modules jdk.incubator.vector
+	 * @return the kernel, or null to use the plain loop
+	 */
+	private static SummaryKernel vectorKernel() {
+		if (Boolean.getBoolean("distance.scalar")) {
+			return null;
+		}
+		try {
+			return (SummaryKernel) Class.forName("VectorDistanceKernel").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return whether the summary pass runs on the SIMD kernel
+	 */
+	public static boolean isVectorized() {
+		return VECTOR != null;
+	}
+
+	/**
+	 * The distance figures for a run of rows
+	 */
+	public static final class Summary {
+
+		private double max;
+		private int argMax;
+		private double sum;
+		private int count;
+
+		Summary(double max, int argMax, double sum, int count) {
+			this.max = max;
+			this.argMax = argMax;
+			this.sum = sum;
+			this.count = count;
+		}
+
+		/**
+		 * @return the longest distance, or 0.0 with no location data
+		 */
+		public double getMax() {
+			return max;
+		}
+
+		/**
+		 * @return the row of the first trip with the longest distance,
+		 * or the first row of the run with no location data
+		 */
+		public int getArgMax() {
+			return argMax;
+		}
+
+		/**
+		 * @return the total distance of trips with location data
+		 */
+		public double getSum() {
+			return sum;
+		}
+
+		/**
+		 * @return the number of trips with location data
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Combines the figures for a run with those of the run
+		 * straight after it
+		 * The earlier run keeps the longest trip on a tie, so the
+		 * result matches one pass over both runs, apart from the
+		 * order the sums are added in
+		 * @param next is the summary of the following run
+		 * @return this summary, now covering both runs
+		 */
+		public Summary merge(Summary next) {
+			if (next.max > max) {
+				max = next.max;
+				argMax = next.argMax;
+			}
+			sum += next.sum;
+			count += next.count;
+			return this;
+		}
+	}
+
+	/**
+	 * Measures every trip from one row up to another in one pass
+	 * @param trips are the trips to measure
+	 * @param from is the first row
+	 * @param to is the row after the last one
+	 * @return the longest distance and its row, the total and the count
+	 */
+	public static Summary summarize(TripTable trips, int from, int to) {
+		double[] distances = trips.distanceColumn();
+		return VECTOR != null ? VECTOR.summarize(distances, from, to) : summarizeScalar(distances, from, to);
+	}
+
+	/**
+	 * The plain loop behind summarize
+	 * @param distances is the distance column
+	 * @param from is the first row
+	 * @param to is the row after the last one
+	 * @return the longest distance and its row, the total and the count
+	 */
+	static Summary summarizeScalar(double[] distances, int from, int to) {
+		double max = 0.0;
+		int argMax = from;
+		double sum = 0.0;
+		int count = 0;
+		for (int row = from; row < to; row++) {
+			double distance = distances[row];
+			if (!Double.isNaN(distance)) {
+				sum += distance;
+				count++;
+				if (distance > max) {
+					max = distance;
+					argMax = row;
+				}
+			}
+		}
+		return new Summary(max, argMax, sum, count);
+	}
+
+	/**
+	 * Adds each trip's distance to its group, for example the slot
+	 * of its start station, in one pass over the trips
+	 * Sums and counts only take trips with location data, and the
+	 * maximums start from whatever is already in the array
+	 * @param trips are the trips to measure
+	 * @param group gives the group of each row
+	 * @param sums receives the total distance of each group
+	 * @param counts receives the number of located trips in each group
+	 * @param maxima receives the longest distance in each group
+	 */
+	public static void grouped(TripTable trips, int[] group, double[] sums, int[] counts, double[] maxima) {
+		double[] distances = trips.distanceColumn();
+		for (int row = 0; row < trips.size(); row++) {
+			double distance = distances[row];
+			if (!Double.isNaN(distance)) {
+				int g = group[row];
+				sums[g] += distance;
+				counts[g]++;
+				if (distance > maxima[g]) {
+					maxima[g] = distance;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ * This class converts between calendar fields and seconds
+ * counted from 1970-01-01 00:00:00
+ * The Indego files give local Philadelphia times with no zone,
+ * so the times are treated as if they were UTC and no daylight
+ * saving shifts are applied
+ * The conversions are plain arithmetic and create no objects
+ *
+ */
+public class EpochTime {
+
+	public static final int SECONDS_PER_DAY = 86400;
+
+	/**
+	 * @return the number of seconds since 1970-01-01 00:00:00
+	 */
+	public static long toEpochSecond(int year, int month, int day,
+			int hour, int minute, int second) {
+		return daysFromCivil(year, month, day) * SECONDS_PER_DAY
+				+ hour * 3600 + minute * 60 + second;
+	}
+
+	/**
+	 * Reads a "yyyy-MM-dd HH:mm:ss" date and time by walking its
+	 * characters, so nothing is split off or allocated
+	 * Quotes and other separators are skipped, fields may have any
+	 * number of digits, and the seconds may be left out
+	 * @param text is the date and time as written in a trip file
+	 * @return the number of seconds since 1970-01-01 00:00:00
+	 */
+	public static long parse(CharSequence text) {
+		int year = 0;
+		int month = 0;
+		int day = 0;
+		int hour = 0;
+		int minute = 0;
+		int second = 0;
+		int field = 0;
+		int value = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			char c = i < text.length() ? text.charAt(i) : ' ';
+			if (c >= '0' && c <= '9') {
+				value = Math.max(value, 0) * 10 + (c - '0');
+			} else if (value >= 0) {
+				switch (field) {
+				case 0: year = value; break;
+				case 1: month = value; break;
+				case 2: day = value; break;
+				case 3: hour = value; break;
+				case 4: minute = value; break;
+				case 5: second = value; break;
+				default: break;
+				}
+				field++;
+				value = -1;
+			}
+		}
+		if (field < 5) {
+			throw new NumberFormatException("Not a date and time: " + text);
+		}
+		return toEpochSecond(year, month, day, hour, minute, second);
+	}
+
+	/**
+	 * Counts days from 1970-01-01 using the proleptic Gregorian calendar
+	 * @return the day number of the date
+	 */
+	public static long daysFromCivil(int year, int month, int day) {
+		long y = month <= 2 ? year - 1 : year;
+		long era = Math.floorDiv(y, 400);
+		long yearOfEra = y - era * 400;
+		long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/**
+	 * @return the day number that contains the given second
+	 */
+	public static long epochDay(long epochSecond) {
+		return Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+	}
+
+	/**
+	 * @return the year of the given second
+	 */
+	public static int year(long epochSecond) {
+		long days = epochDay(epochSecond) + 719468;
+		long era = Math.floorDiv(days, 146097);
+		long dayOfEra = days - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long shiftedMonth = (5 * dayOfYear + 2) / 153;
+		return (int) (yearOfEra + era * 400 + (shiftedMonth >= 10 ? 1 : 0));
+	}
+
+	/**
+	 * @return the month of the given second, from 1 to 12
+	 */
+	public static int month(long epochSecond) {
+		long shiftedMonth = (5 * dayOfShiftedYear(epochSecond) + 2) / 153;
+		return (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+	}
+
+	/**
+	 * @return the day of the month of the given second, from 1 to 31
+	 */
+	public static int day(long epochSecond) {
+		long dayOfYear = dayOfShiftedYear(epochSecond);
+		long shiftedMonth = (5 * dayOfYear + 2) / 153;
+		return (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+	}
+
+	/**
+	 * @return the hour of the given second, from 0 to 23
+	 */
+	public static int hour(long epochSecond) {
+		return secondOfDay(epochSecond) / 3600;
+	}
+
+	/**
+	 * @return the minute of the given second, from 0 to 59
+	 */
+	public static int minute(long epochSecond) {
+		return secondOfDay(epochSecond) / 60 % 60;
+	}
+
+	/**
+	 * @return the second of the minute, from 0 to 59
+	 */
+	public static int second(long epochSecond) {
+		return secondOfDay(epochSecond) % 60;
+	}
+
+	/**
+	 * @return the seconds since midnight of the given second
+	 */
+	public static int secondOfDay(long epochSecond) {
+		return (int) Math.floorMod(epochSecond, (long) SECONDS_PER_DAY);
+	}
+
+	/**
+	 * Days counted from March 1st, so that February is the
+	 * last month of the shifted year
+	 */
+	private static long dayOfShiftedYear(long epochSecond) {
+		long days = epochDay(epochSecond) + 719468;
+		long era = Math.floorDiv(days, 146097);
+		long dayOfEra = days - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		return dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+	}
+}
@@ -0,0 +1,425 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * This class reads an Indego trip file by memory-mapping it
+ * and decoding every field straight from the bytes
+ * Numbers and timestamps never become Strings, and empty
+ * coordinates are detected instead of caught as exceptions
+ * The file is mapped in windows that end on a line break,
+ * so files larger than 2GB can be read as well
+ *
+ */
+public class MappedTripParser {
+
+	private static final long WINDOW_SIZE = 1L << 28;
+	private static final int FIELD_COUNT = 14;
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private String fileName;
+	private long fileSize;
+	private long dataStart;
+
+	/**
+	 * Opens the trip file and finds where the first trip row begins
+	 * @param fileName is the file path for the trip file
+	 * @throws FileNotFoundException if the file does not exist
+	 */
+	public MappedTripParser(String fileName) throws FileNotFoundException {
+		File inputFile = new File(fileName);
+		if (!inputFile.isFile()) {
+			throw new FileNotFoundException(fileName);
+		}
+		this.fileName = fileName;
+		try (FileChannel channel = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ)) {
+			fileSize = channel.size();
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					Math.min(fileSize, WINDOW_SIZE));
+			dataStart = fileSize;
+			for (int i = 0; i < header.limit(); i++) {
+				if (header.get(i) == '\n') {
+					dataStart = i + 1;
+					break;
+				}
+			}
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+	}
+
+	/**
+	 * @return the byte offset of the first row after the header
+	 */
+	public long getDataStart() {
+		return dataStart;
+	}
+
+	/**
+	 * @return the size of the trip file in bytes
+	 */
+	public long getFileSize() {
+		return fileSize;
+	}
+
+	/**
+	 * Splits the trip rows into byte ranges of about the same size
+	 * Every boundary is moved forward to the start of the next line,
+	 * so each row belongs to exactly one range
+	 * @param parts is the number of ranges wanted
+	 * @return the boundaries, where range i is [i, i + 1)
+	 */
+	public long[] splitRanges(int parts) {
+		long span = fileSize - dataStart;
+		long[] boundaries = new long[parts + 1];
+		boundaries[0] = dataStart;
+		boundaries[parts] = fileSize;
+		try (FileChannel channel = FileChannel.open(new File(fileName).toPath(), StandardOpenOption.READ)) {
+			ByteBuffer probe = ByteBuffer.allocate(4096);
+			for (int i = 1; i < parts; i++) {
+				long boundary = Math.max(dataStart + span * i / parts, boundaries[i - 1]);
+				boundaries[i] = nextLineStart(channel, probe, boundary);
+			}
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+		return boundaries;
+	}
+
+	/**
+	 * @return the offset just past the first line break at or after position,
+	 * or the end of the file if there is none
+	 */
+	private long nextLineStart(FileChannel channel, ByteBuffer probe, long position) throws IOException {
+		if (position == dataStart) {
+			return position;
+		}
+		long offset = position - 1;
+		while (offset < fileSize) {
+			probe.clear();
+			int read = channel.read(probe, offset);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (probe.get(i) == '\n') {
+					return offset + i + 1;
+				}
+			}
+			offset += read;
+		}
+		return fileSize;
+	}
+
+	/**
+	 * Reads every trip in the file into a table
+	 * @return the trips in file order
+	 */
+	public TripTable readTable() {
+		return readTable(dataStart, fileSize);
+	}
+
+	/**
+	 * Reads the trips in one byte range into a table
+	 * @param from is the first byte of the range
+	 * @param to is one past the last byte of the range
+	 * @return the trips in file order
+	 */
+	public TripTable readTable(long from, long to) {
+		TripTable.Builder table = new TripTable.Builder();
+		parse(from, to, table);
+		return table.build();
+	}
+
+	/**
+	 * Decodes all rows that begin inside a byte range and
+	 * hands each of them to the consumer in file order
+	 * The range must start at the beginning of a line
+	 * @param from is the first byte of the range
+	 * @param to is one past the last byte of the range
+	 * @param consumer receives each decoded row
+	 */
+	public void parse(long from, long to, TripConsumer consumer) {
+		RowDecoder decoder = new RowDecoder();
+		try (FileChannel channel = FileChannel.open(new File(fileName).toPath(), StandardOpenOption.READ)) {
+			long position = Math.max(from, dataStart);
+			while (position < to) {
+				long length = Math.min(to - position, WINDOW_SIZE);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+				int limit = (int) length;
+				if (position + length < to) {
+					while (limit > 0 && buffer.get(limit - 1) != '\n') {
+						limit--;
+					}
+					if (limit == 0) {
+						throw new IllegalStateException("Trip row at byte " + position
+								+ " is longer than the mapping window");
+					}
+				}
+				decoder.decodeLines(buffer, limit, position, consumer);
+				position += limit;
+			}
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+	}
+
+	/**
+	 * Decodes the rows of one mapped window
+	 * Each decoder owns its record and category cache,
+	 * so separate ranges can be parsed at the same time
+	 */
+	private static class RowDecoder {
+
+		private TripRecord record = new TripRecord();
+		private int[] fieldStarts = new int[FIELD_COUNT + 1];
+		private ArrayList<byte[]> categoryBytes = new ArrayList<byte[]>();
+		private ArrayList<Integer> categoryCodes = new ArrayList<Integer>();
+		private StringDictionary dictionary = StringDictionary.shared();
+		private MappedByteBuffer buffer;
+
+		private void decodeLines(MappedByteBuffer buffer, int limit, long offset, TripConsumer consumer) {
+			this.buffer = buffer;
+			int lineStart = 0;
+			while (lineStart < limit) {
+				int lineEnd = lineStart;
+				while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+					lineEnd++;
+				}
+				int next = lineEnd + 1;
+				if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+					lineEnd--;
+				}
+				if (lineEnd > lineStart) {
+					decodeLine(lineStart, lineEnd, offset);
+					consumer.accept(record);
+				}
+				lineStart = next;
+			}
+		}
+
+		private void decodeLine(int start, int end, long offset) {
+			int fields = 1;
+			fieldStarts[0] = start;
+			for (int i = start; i < end && fields < FIELD_COUNT; i++) {
+				if (buffer.get(i) == ',') {
+					fieldStarts[fields++] = i + 1;
+				}
+			}
+			if (fields < FIELD_COUNT) {
+				throw new IllegalArgumentException("Trip row at byte " + (offset + start)
+						+ " has only " + fields + " fields");
+			}
+			int lastEnd = fieldStarts[FIELD_COUNT - 1];
+			while (lastEnd < end && buffer.get(lastEnd) != ',') {
+				lastEnd++;
+			}
+			fieldStarts[FIELD_COUNT] = lastEnd + 1;
+
+			record.tripID = parseInt(0);
+			record.duration = parseInt(1);
+			record.startTime = decodeTimestamp(2);
+			record.endTime = decodeTimestamp(3);
+			record.startStation = parseInt(4);
+			record.startLat = parseCoordinate(5);
+			record.startLong = parseCoordinate(6);
+			record.endStation = parseInt(7);
+			record.endLat = parseCoordinate(8);
+			record.endLong = parseCoordinate(9);
+			record.bikeID = parseInt(10);
+			record.planDuration = parseInt(11);
+			record.tripRouteCategoryCode = category(12);
+			record.tripRouteCategory = dictionary.decode(record.tripRouteCategoryCode);
+			record.passholderTypeCode = category(13);
+			record.passholderType = dictionary.decode(record.passholderTypeCode);
+		}
+
+		private int fieldEnd(int field) {
+			return fieldStarts[field + 1] - 1;
+		}
+
+		private String text(int field) {
+			int from = fieldStarts[field];
+			byte[] bytes = new byte[fieldEnd(field) - from];
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = buffer.get(from + i);
+			}
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Integers may be wrapped in quotes, as the bike ID is
+		 */
+		private int parseInt(int field) {
+			int from = fieldStarts[field];
+			int to = fieldEnd(field);
+			if (to - from >= 2 && buffer.get(from) == '"' && buffer.get(to - 1) == '"') {
+				from++;
+				to--;
+			}
+			boolean negative = false;
+			if (from < to && (buffer.get(from) == '-' || buffer.get(from) == '+')) {
+				negative = buffer.get(from) == '-';
+				from++;
+			}
+			if (from == to || to - from > 10) {
+				throw new NumberFormatException("For input string: \"" + text(field) + "\"");
+			}
+			long value = 0;
+			for (int i = from; i < to; i++) {
+				int digit = buffer.get(i) - '0';
+				if (digit < 0 || digit > 9) {
+					throw new NumberFormatException("For input string: \"" + text(field) + "\"");
+				}
+				value = value * 10 + digit;
+			}
+			value = negative ? -value : value;
+			if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+				throw new NumberFormatException("For input string: \"" + text(field) + "\"");
+			}
+			return (int) value;
+		}
+
+		/**
+		 * Missing coordinates come through as empty or quoted fields
+		 * and are stored as -1.0, the same marker the Scanner reader used
+		 * Plain decimals are decoded exactly: a mantissa below 2^53
+		 * divided by an exact power of ten rounds the same way
+		 * Double.parseDouble does
+		 * Anything unusual, like an exponent, goes to the JDK parser
+		 */
+		private double parseCoordinate(int field) {
+			int from = fieldStarts[field];
+			int to = fieldEnd(field);
+			if (from == to || buffer.get(from) == '"') {
+				return -1.0;
+			}
+			int i = from;
+			boolean negative = false;
+			if (buffer.get(i) == '-' || buffer.get(i) == '+') {
+				negative = buffer.get(i) == '-';
+				i++;
+			}
+			long mantissa = 0;
+			int scale = 0;
+			boolean anyDigit = false;
+			boolean fraction = false;
+			for (; i < to; i++) {
+				byte b = buffer.get(i);
+				if (b >= '0' && b <= '9') {
+					if (mantissa >= MAX_EXACT_MANTISSA / 10) {
+						return parseCoordinateSlowly(field);
+					}
+					mantissa = mantissa * 10 + (b - '0');
+					anyDigit = true;
+					if (fraction) {
+						scale++;
+					}
+				} else if (b == '.' && !fraction) {
+					fraction = true;
+				} else {
+					return parseCoordinateSlowly(field);
+				}
+			}
+			if (!anyDigit) {
+				return -1.0;
+			}
+			if (scale >= POWERS_OF_TEN.length) {
+				return parseCoordinateSlowly(field);
+			}
+			double value = mantissa / POWERS_OF_TEN[scale];
+			return negative ? -value : value;
+		}
+
+		private double parseCoordinateSlowly(int field) {
+			try {
+				return Double.parseDouble(text(field));
+			} catch (IllegalArgumentException iae) {
+				return -1.0;
+			}
+		}
+
+		/**
+		 * Decodes a quoted "yyyy-MM-dd HH:mm:ss" timestamp at fixed
+		 * offsets into epoch seconds
+		 * Any other layout is handed to EpochTime.parse as text
+		 */
+		private long decodeTimestamp(int field) {
+			int from = fieldStarts[field];
+			if (!isFixedTimestamp(from, fieldEnd(field))) {
+				return EpochTime.parse(text(field));
+			}
+			return EpochTime.toEpochSecond(digits(from + 1, 4), digits(from + 6, 2),
+					digits(from + 9, 2), digits(from + 12, 2), digits(from + 15, 2),
+					digits(from + 18, 2));
+		}
+
+		private boolean isFixedTimestamp(int from, int to) {
+			if (to - from != 21 || buffer.get(from) != '"' || buffer.get(to - 1) != '"'
+					|| buffer.get(from + 5) != '-' || buffer.get(from + 8) != '-'
+					|| buffer.get(from + 11) != ' ' || buffer.get(from + 14) != ':'
+					|| buffer.get(from + 17) != ':') {
+				return false;
+			}
+			return digits(from + 1, 4) >= 0 && digits(from + 6, 2) >= 0 && digits(from + 9, 2) >= 0
+					&& digits(from + 12, 2) >= 0 && digits(from + 15, 2) >= 0 && digits(from + 18, 2) >= 0;
+		}
+
+		/**
+		 * @return the value of a run of digits, or -1 if one is not a digit
+		 */
+		private int digits(int from, int count) {
+			int value = 0;
+			for (int i = from; i < from + count; i++) {
+				int digit = buffer.get(i) - '0';
+				if (digit < 0 || digit > 9) {
+					return -1;
+				}
+				value = value * 10 + digit;
+			}
+			return value;
+		}
+
+		/**
+		 * Category fields only take a handful of values, so each
+		 * distinct value is looked up in the shared dictionary once
+		 * and its code is reused
+		 * @return the dictionary code of the field
+		 */
+		private int category(int field) {
+			int from = fieldStarts[field];
+			int length = fieldEnd(field) - from;
+			search:
+			for (int c = 0; c < categoryBytes.size(); c++) {
+				byte[] known = categoryBytes.get(c);
+				if (known.length != length) {
+					continue;
+				}
+				for (int i = 0; i < length; i++) {
+					if (known[i] != buffer.get(from + i)) {
+						continue search;
+					}
+				}
+				return categoryCodes.get(c);
+			}
+			byte[] bytes = new byte[length];
+			for (int i = 0; i < length; i++) {
+				bytes[i] = buffer.get(from + i);
+			}
+			int code = dictionary.encode(new String(bytes, StandardCharsets.UTF_8));
+			categoryBytes.add(bytes);
+			categoryCodes.add(code);
+			return code;
+		}
+	}
+}
@@ -0,0 +1,182 @@
+import java.util.Arrays;
+
+/**
+ * This class answers how many bikes were out on a trip
+ * at any moment of the quarter
+ * A bike counts as in use from the second its trip starts
+ * through the second it ends, both inclusive
+ * The start and end times are sorted once, and the count at
+ * any instant is the number of trips started by then minus the
+ * number already finished
+ * The counts at every step of the chosen resolution are also
+ * worked out up front with one sweep, so aligned queries are
+ * a single array lookup
+ *
+ */
+public class OccupancyTimeline {
+
+	public static final int DEFAULT_RESOLUTION = 60;
+
+	private long[] sortedStarts;
+	private long[] sortedEnds;
+	private int resolution;
+	private long origin;
+	private int[] counts;
+
+	/**
+	 * Builds a timeline with one-minute steps
+	 * @param trips are the trips to place on the timeline
+	 */
+	public OccupancyTimeline(TripTable trips) {
+		this(trips, DEFAULT_RESOLUTION);
+	}
+
+	/**
+	 * Builds a timeline with steps of the given length
+	 * @param trips are the trips to place on the timeline
+	 * @param resolution is the step length in seconds
+	 */
+	public OccupancyTimeline(TripTable trips, int resolution) {
+		if (resolution <= 0) {
+			throw new IllegalArgumentException("resolution must be positive: " + resolution);
+		}
+		this.resolution = resolution;
+		int size = trips.size();
+		sortedStarts = Arrays.copyOf(trips.startTimeColumn(), size);
+		sortedEnds = Arrays.copyOf(trips.endTimeColumn(), size);
+		Arrays.sort(sortedStarts);
+		Arrays.sort(sortedEnds);
+
+		if (size == 0) {
+			counts = new int[0];
+			return;
+		}
+		origin = Math.floorDiv(sortedStarts[0], (long) resolution) * resolution;
+		long last = Math.max(sortedEnds[size - 1], sortedStarts[size - 1]);
+		long steps = (last - origin) / resolution + 2;
+		if (steps > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("resolution too fine for the time span: " + resolution);
+		}
+		counts = sweep(origin, (int) steps);
+	}
+
+	/**
+	 * Walks the sorted starts and ends alongside a run of
+	 * evenly spaced instants
+	 * @param from is the first instant
+	 * @param steps is the number of instants
+	 * @return the bikes in use at each instant
+	 */
+	private int[] sweep(long from, int steps) {
+		int[] series = new int[steps];
+		int started = 0;
+		int finished = 0;
+		long instant = from;
+		for (int i = 0; i < steps; i++, instant += resolution) {
+			while (started < sortedStarts.length && sortedStarts[started] <= instant) {
+				started++;
+			}
+			while (finished < sortedEnds.length && sortedEnds[finished] < instant) {
+				finished++;
+			}
+			series[i] = started - finished;
+		}
+		return series;
+	}
+
+	/**
+	 * Constant time when the instant falls on a step of the
+	 * timeline, otherwise two binary searches
+	 * @param epochSecond is the instant to check
+	 * @return the number of bikes in use at that instant
+	 */
+	public int bikesInUseAt(long epochSecond) {
+		long offset = epochSecond - origin;
+		if (offset >= 0 && offset % resolution == 0 && offset / resolution < counts.length) {
+			return counts[(int) (offset / resolution)];
+		}
+		return countAtOrBefore(sortedStarts, epochSecond) - countAtOrBefore(sortedEnds, epochSecond - 1);
+	}
+
+	/**
+	 * Gives the bikes in use at each step from one instant
+	 * up to and including another
+	 * @param from is the first instant
+	 * @param to is the last instant
+	 * @param step is the spacing between instants in seconds
+	 * @return the bikes in use at from, from + step, and so on
+	 */
+	public int[] bikesInUseSeries(long from, long to, int step) {
+		if (step <= 0) {
+			throw new IllegalArgumentException("step must be positive: " + step);
+		}
+		if (to < from) {
+			return new int[0];
+		}
+		long steps = (to - from) / step + 1;
+		if (steps > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("too many steps: " + steps);
+		}
+		int[] series = new int[(int) steps];
+		long offset = from - origin;
+		if (step % resolution == 0 && offset >= 0 && offset % resolution == 0) {
+			int stride = step / resolution;
+			long index = offset / resolution;
+			for (int i = 0; i < series.length; i++, index += stride) {
+				series[i] = index < counts.length ? counts[(int) index] : 0;
+			}
+			return series;
+		}
+		int started = countAtOrBefore(sortedStarts, from);
+		int finished = countAtOrBefore(sortedEnds, from - 1);
+		long instant = from;
+		for (int i = 0; i < series.length; i++, instant += step) {
+			while (started < sortedStarts.length && sortedStarts[started] <= instant) {
+				started++;
+			}
+			while (finished < sortedEnds.length && sortedEnds[finished] < instant) {
+				finished++;
+			}
+			series[i] = started - finished;
+		}
+		return series;
+	}
+
+	/**
+	 * @return the bikes in use at every step of the timeline
+	 */
+	public int[] bikesInUseSeries() {
+		return counts.clone();
+	}
+
+	/**
+	 * @return the instant of the first step
+	 */
+	public long getOrigin() {
+		return origin;
+	}
+
+	/**
+	 * @return the step length in seconds
+	 */
+	public int getResolution() {
+		return resolution;
+	}
+
+	/**
+	 * @return the number of values up to and including the key
+	 */
+	private static int countAtOrBefore(long[] sorted, long key) {
+		int low = 0;
+		int high = sorted.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorted[mid] <= key) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,243 @@
+/**
+ * This class counts trips between every pair of stations
+ * Cell (origin, destination) holds the number of trips, their
+ * total duration, and the total and count of their Haversine
+ * distances in kilometres, skipping trips with no location data
+ * Each measure is one flat array of stations x stations cells,
+ * laid out row by row with origins indexed by StationDirectory slot
+ * Row, column and diagonal views give departures, arrivals and
+ * round-trips without going back to the trips
+ * A built matrix cannot be changed; to fill one while the trip
+ * file is streamed, hand the parser an OriginDestinationMatrix.Builder
+ * along with a directory of the stations
+ * Trips between stations missing from the directory are only
+ * counted as unmatched
+ *
+ */
+public class OriginDestinationMatrix {
+
+	private StationDirectory directory;
+	private int stations;
+	private int[] counts;
+	private long[] durationSums;
+	private double[] distanceSums;
+	private int[] distanceCounts;
+	private int unmatched;
+
+	private OriginDestinationMatrix(StationDirectory directory) {
+		this.directory = directory;
+		stations = directory.size();
+		int cells = Math.multiplyExact(stations, stations);
+		counts = new int[cells];
+		durationSums = new long[cells];
+		distanceSums = new double[cells];
+		distanceCounts = new int[cells];
+	}
+
+	/**
+	 * Builds the matrix from every trip in a table
+	 * @param trips are the trips to count
+	 * @param directory gives each station its slot
+	 */
+	public OriginDestinationMatrix(TripTable trips, StationDirectory directory) {
+		this(directory);
+		for (int row = 0; row < trips.size(); row++) {
+			add(trips.getStartStation(row), trips.getEndStation(row), trips.getDuration(row), trips.getDistance(row));
+		}
+	}
+
+	private void add(int startStation, int endStation, int duration, double distance) {
+		int origin = directory.slotOf(startStation);
+		int destination = directory.slotOf(endStation);
+		if (origin < 0 || destination < 0) {
+			unmatched++;
+			return;
+		}
+		int cell = origin * stations + destination;
+		counts[cell]++;
+		durationSums[cell] += duration;
+		if (!Double.isNaN(distance)) {
+			distanceSums[cell] += distance;
+			distanceCounts[cell]++;
+		}
+	}
+
+	private int cell(int originID, int destinationID) {
+		int origin = directory.slotOf(originID);
+		int destination = directory.slotOf(destinationID);
+		return origin < 0 || destination < 0 ? -1 : origin * stations + destination;
+	}
+
+	/**
+	 * @return the directory that gives the row and column of each station
+	 */
+	public StationDirectory getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return the number of trips that used a station not in the directory
+	 */
+	public int getUnmatchedTrips() {
+		return unmatched;
+	}
+
+	/**
+	 * @return the number of trips from one station to another
+	 */
+	public int getCount(int originID, int destinationID) {
+		int cell = cell(originID, destinationID);
+		return cell < 0 ? 0 : counts[cell];
+	}
+
+	/**
+	 * @return the total duration of trips from one station to another
+	 */
+	public long getDurationSum(int originID, int destinationID) {
+		int cell = cell(originID, destinationID);
+		return cell < 0 ? 0 : durationSums[cell];
+	}
+
+	/**
+	 * @return the total distance in kilometres of trips from one
+	 * station to another that have location data
+	 */
+	public double getDistanceSum(int originID, int destinationID) {
+		int cell = cell(originID, destinationID);
+		return cell < 0 ? 0.0 : distanceSums[cell];
+	}
+
+	/**
+	 * @return the number of trips from one station to another
+	 * that have location data
+	 */
+	public int getDistanceCount(int originID, int destinationID) {
+		int cell = cell(originID, destinationID);
+		return cell < 0 ? 0 : distanceCounts[cell];
+	}
+
+	/**
+	 * @return the trips from a station to each destination, indexed by slot
+	 */
+	public int[] rowCounts(int originID) {
+		int[] row = new int[stations];
+		int origin = directory.slotOf(originID);
+		if (origin >= 0) {
+			System.arraycopy(counts, origin * stations, row, 0, stations);
+		}
+		return row;
+	}
+
+	/**
+	 * @return the trips to a station from each origin, indexed by slot
+	 */
+	public int[] columnCounts(int destinationID) {
+		int[] column = new int[stations];
+		int destination = directory.slotOf(destinationID);
+		if (destination >= 0) {
+			for (int origin = 0; origin < stations; origin++) {
+				column[origin] = counts[origin * stations + destination];
+			}
+		}
+		return column;
+	}
+
+	/**
+	 * @return the round-trips at each station, indexed by slot
+	 */
+	public int[] diagonalCounts() {
+		int[] diagonal = new int[stations];
+		for (int slot = 0; slot < stations; slot++) {
+			diagonal[slot] = counts[slot * stations + slot];
+		}
+		return diagonal;
+	}
+
+	/**
+	 * @return the number of trips that started at a station
+	 */
+	public int getDepartures(int stationID) {
+		int origin = directory.slotOf(stationID);
+		int departures = 0;
+		if (origin >= 0) {
+			for (int cell = origin * stations; cell < (origin + 1) * stations; cell++) {
+				departures += counts[cell];
+			}
+		}
+		return departures;
+	}
+
+	/**
+	 * @return the number of trips that ended at a station
+	 */
+	public int getArrivals(int stationID) {
+		int destination = directory.slotOf(stationID);
+		int arrivals = 0;
+		if (destination >= 0) {
+			for (int cell = destination; cell < counts.length; cell += stations) {
+				arrivals += counts[cell];
+			}
+		}
+		return arrivals;
+	}
+
+	/**
+	 * @return the number of trips that started and ended at a station
+	 */
+	public int getRoundTrips(int stationID) {
+		return getCount(stationID, stationID);
+	}
+
+	/**
+	 * Round-trips are counted once
+	 * @return the number of trips that started or ended at a station
+	 */
+	public int getTotalTrips(int stationID) {
+		return getDepartures(stationID) + getArrivals(stationID) - getRoundTrips(stationID);
+	}
+
+	/**
+	 * Counts trips streamed from the parser into a new matrix
+	 * It takes no more trips once the matrix is built
+	 */
+	public static final class Builder implements TripConsumer {
+
+		private OriginDestinationMatrix matrix;
+
+		/**
+		 * Starts an empty matrix
+		 * @param directory gives each station its slot
+		 */
+		public Builder(StationDirectory directory) {
+			matrix = new OriginDestinationMatrix(directory);
+		}
+
+		/**
+		 * Adds a trip streamed from the parser
+		 * @param trip is the decoded trip
+		 */
+		@Override
+		public void accept(TripRecord trip) {
+			if (matrix == null) {
+				throw new IllegalStateException("the matrix has already been built");
+			}
+			double distance = Double.NaN;
+			if (trip.startLat != -1.0 && trip.startLong != -1.0 && trip.endLat != -1.0 && trip.endLong != -1.0) {
+				distance = StationGrid.haversine(trip.startLat, trip.startLong, trip.endLat, trip.endLong);
+			}
+			matrix.add(trip.startStation, trip.endStation, trip.duration, distance);
+		}
+
+		/**
+		 * @return the matrix of every trip added so far
+		 */
+		public OriginDestinationMatrix build() {
+			if (matrix == null) {
+				throw new IllegalStateException("the matrix has already been built");
+			}
+			OriginDestinationMatrix built = matrix;
+			matrix = null;
+			return built;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class runs a scan over the rows of a trip table on a
+ * fork-join pool
+ * The rows are split in half again and again until the pieces
+ * are small, each piece is scanned on its own, and the partial
+ * results are merged back pairwise, left before right
+ * As long as the merge is associative and keeps the left
+ * result on ties, the answer matches one scan over every row
+ * Each piece checks first whether the thread that asked for the
+ * scan has been interrupted, and if so the scan stops with a
+ * CancellationException, so abandoned queries free the pool
+ *
+ */
+public class ParallelRowScan {
+
+	private static final int PIECES_PER_WORKER = 4;
+	private static final int MIN_PIECE_ROWS = 1 << 14;
+
+	/**
+	 * Works out a partial result for a run of rows
+	 */
+	public interface RangeScan<R> {
+		R scan(int from, int to);
+	}
+
+	/**
+	 * Combines the results of two neighbouring runs of rows
+	 */
+	public interface Merge<R> {
+		R merge(R left, R right);
+	}
+
+	private ForkJoinPool pool;
+
+	/**
+	 * Uses the common fork-join pool, which has
+	 * one worker per available core
+	 */
+	public ParallelRowScan() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param pool is the pool the pieces are scanned on
+	 */
+	public ParallelRowScan(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Scans rows 0 to rows - 1 in pieces and merges the results
+	 * @param rows is the number of rows to scan
+	 * @param scan works out the result for one piece
+	 * @param merge combines two results
+	 * @return the merged result
+	 */
+	public <R> R reduce(int rows, RangeScan<R> scan, Merge<R> merge) {
+		Thread caller = Thread.currentThread();
+		checkInterrupted(caller);
+		int pieceRows = Math.max(MIN_PIECE_ROWS, rows / (pool.getParallelism() * PIECES_PER_WORKER) + 1);
+		if (rows <= pieceRows) {
+			return scan.scan(0, rows);
+		}
+		return pool.invoke(new PieceTask<R>(0, rows, pieceRows, scan, merge, caller));
+	}
+
+	/**
+	 * Stops a scan whose caller has been interrupted, for example
+	 * because its query was cancelled or ran out of time
+	 * The interrupt is left set for the caller to see
+	 * @param caller is the thread that asked for the scan
+	 */
+	static void checkInterrupted(Thread caller) {
+		if (caller.isInterrupted()) {
+			throw new CancellationException("the scan was interrupted");
+		}
+	}
+
+	/**
+	 * Scans a run of rows, splitting it first if it is large
+	 */
+	private static class PieceTask<R> extends RecursiveTask<R> {
+
+		private static final long serialVersionUID = 1L;
+
+		private int from;
+		private int to;
+		private int pieceRows;
+		private RangeScan<R> scan;
+		private Merge<R> merge;
+		private Thread caller;
+
+		private PieceTask(int from, int to, int pieceRows, RangeScan<R> scan, Merge<R> merge, Thread caller) {
+			this.from = from;
+			this.to = to;
+			this.pieceRows = pieceRows;
+			this.scan = scan;
+			this.merge = merge;
+			this.caller = caller;
+		}
+
+		@Override
+		protected R compute() {
+			checkInterrupted(caller);
+			if (to - from <= pieceRows) {
+				return scan.scan(from, to);
+			}
+			int middle = (from + to) >>> 1;
+			PieceTask<R> left = new PieceTask<R>(from, middle, pieceRows, scan, merge, caller);
+			PieceTask<R> right = new PieceTask<R>(middle, to, pieceRows, scan, merge, caller);
+			right.fork();
+			R leftResult = left.compute();
+			return merge.merge(leftResult, right.join());
+		}
+	}
+}
@@ -0,0 +1,83 @@
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class loads a trip file on several cores at once
+ * The rows are split into line-aligned byte ranges, each range
+ * is parsed on a fork-join worker, and the pieces are joined
+ * back together in file order
+ *
+ */
+public class ParallelTripLoader {
+
+	private static final int CHUNKS_PER_WORKER = 4;
+	private static final long MIN_CHUNK_SIZE = 1L << 20;
+
+	private ForkJoinPool pool;
+
+	/**
+	 * Uses the common fork-join pool, which has
+	 * one worker per available core
+	 */
+	public ParallelTripLoader() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param pool is the pool the ranges are parsed on
+	 */
+	public ParallelTripLoader(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Reads every trip in the file
+	 * @param inputFileName is the file path for the trip file
+	 * @return the trips in the same order as the file
+	 */
+	public TripTable load(String inputFileName) throws FileNotFoundException {
+		MappedTripParser parser = new MappedTripParser(inputFileName);
+		long rowBytes = parser.getFileSize() - parser.getDataStart();
+		int chunks = (int) Math.max(1, Math.min(pool.getParallelism() * CHUNKS_PER_WORKER,
+				rowBytes / MIN_CHUNK_SIZE));
+		long[] boundaries = parser.splitRanges(chunks);
+
+		ArrayList<RangeTask> tasks = new ArrayList<RangeTask>();
+		for (int i = 0; i < chunks; i++) {
+			tasks.add(new RangeTask(parser, boundaries[i], boundaries[i + 1]));
+		}
+		for (RangeTask task : tasks) {
+			pool.execute(task);
+		}
+		ArrayList<TripTable> parts = new ArrayList<TripTable>();
+		for (RangeTask task : tasks) {
+			parts.add(task.join());
+		}
+		return TripTable.concat(parts);
+	}
+
+	/**
+	 * Parses one byte range of the trip file
+	 */
+	private static class RangeTask extends RecursiveTask<TripTable> {
+
+		private static final long serialVersionUID = 1L;
+
+		private MappedTripParser parser;
+		private long from;
+		private long to;
+
+		private RangeTask(MappedTripParser parser, long from, long to) {
+			this.parser = parser;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected TripTable compute() {
+			return parser.readTable(from, to);
+		}
+	}
+}
@@ -0,0 +1,338 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This class answers DataAnalysis and StationReportPrinter
+ * questions over HTTP from data that is read once and kept
+ * in memory, instead of reading the files for every run
+ * Each endpoint takes its inputs as query parameters and
+ * answers with a small JSON object, for example
+ * GET /trips-by-type?type=One%20Way&year=2017 gives {"result":17814}
+ * A missing or malformed input gives 400, an unknown query or
+ * station gives 404, and a failure inside the service gives 500
+ * Requests run on a virtual thread each when the JDK has them,
+ * and on a fixed pool of threads otherwise
+ * Usage: java QueryService stationFile tripFile [port]
+ *
+ */
+public class QueryService {
+
+	/**
+	 * Works out the JSON value of the answer to one request
+	 */
+	interface Endpoint {
+		String answer(Map<String, String> params);
+	}
+
+	private static final Pattern TIME = Pattern.compile("(\\d{1,2}):(\\d{2})");
+	private static final Pattern DATE = Pattern.compile("(\\d{1,2})/(\\d{1,2})/(\\d{4})");
+
+	private final DataAnalysis analysis;
+	private final StationReportPrinter reports;
+	private final HashMap<String, Endpoint> endpoints = new HashMap<String, Endpoint>();
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/**
+	 * @param analysis is the analysis the queries are answered from
+	 * @param reports is the report printer for the same files
+	 */
+	public QueryService(DataAnalysis analysis, StationReportPrinter reports) {
+		this.analysis = analysis;
+		this.reports = reports;
+		endpoints.put("/trips-by-type", params -> Integer.toString(analysis.tripsByTripType(
+				required(params, "type"), intParam(params, "year"))));
+		endpoints.put("/stations-by-status", params -> Integer.toString(analysis.stationsByStatus(
+				required(params, "status"), intParam(params, "year"))));
+		endpoints.put("/trips-by-destination", params -> tripsByDestination(params));
+		endpoints.put("/trips-by-passholder-type", params -> Integer.toString(
+				analysis.tripsByPassholderTypeMonth(required(params, "type"))));
+		endpoints.put("/most-traveled-bike", params -> Integer.toString(analysis.mostTraveledBikeByTime()));
+		endpoints.put("/trips-within-interval", params -> quote(analysis.tripsWithinInterval(
+				timeParam(params, "from"), timeParam(params, "to"))));
+		endpoints.put("/bikes-in-use", params -> Integer.toString(analysis.bikesInUseByDateTime(
+				dateParam(params, "date"), timeParam(params, "time"))));
+		endpoints.put("/longest-trip", params -> quote(analysis.longestTripByDistance()));
+		endpoints.put("/unique-start-date-trips", params -> Integer.toString(
+				analysis.tripsByStations(analysis.stationsUniqueStartDate())));
+		endpoints.put("/popular-day", params -> Integer.toString(analysis.popularDayInMonth(
+				intParam(params, "month", 1, 12))));
+		endpoints.put("/close-stations", params -> Integer.toString(params.containsKey("km")
+				? analysis.closeStations(distanceParam(params, "km")) : analysis.closeStations()));
+		endpoints.put("/top-station", params -> quote(analysis.topOrBottomStation(
+				choiceParam(params, "rank", "most", "least"),
+				choiceParam(params, "side", "start", "destination"))));
+		endpoints.put("/maintenance", params -> quote(analysis.stationMaintenanceCategories(
+				intParam(params, "threshold"))));
+		endpoints.put("/station-report", params -> stationReport(params));
+	}
+
+	public static void main(String[] args) throws IOException {
+		String fileNameStations = args.length > 0 ? args[0] : "indego-stations-2017-10-20.csv";
+		String fileNameTrips = args.length > 1 ? args[1] : "indego-trips-2017-q3.csv";
+		int port = args.length > 2 ? Integer.parseInt(args[2]) : 8080;
+
+		QueryService service = new QueryService(new DataAnalysis(fileNameStations, fileNameTrips),
+				new StationReportPrinter(fileNameStations, fileNameTrips));
+		service.start(port);
+		System.out.println("Answering queries on port " + service.getPort()
+				+ (service.isVirtual() ? " with virtual threads" : " with a thread pool"));
+	}
+
+	/**
+	 * Starts listening for requests
+	 * @param port is the port to listen on, or 0 for any free port
+	 */
+	public synchronized void start(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(port), 0);
+		server.createContext("/", this::handle);
+		executor = requestExecutor();
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Stops listening and waits up to a second for requests
+	 * still being answered
+	 */
+	public synchronized void stop() {
+		if (server != null) {
+			server.stop(1);
+			executor.shutdown();
+			server = null;
+		}
+	}
+
+	/**
+	 * @return the port the service is listening on
+	 */
+	public synchronized int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * @return whether requests run on virtual threads
+	 */
+	public synchronized boolean isVirtual() {
+		return executor != null && !(executor instanceof ThreadPoolExecutor);
+	}
+
+	/**
+	 * Virtual threads are looked up by name so the service still
+	 * builds and runs on JDKs that do not have them
+	 */
+	private static ExecutorService requestExecutor() {
+		try {
+			Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) virtual.invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 4);
+		}
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		int status = 200;
+		String body;
+		Endpoint endpoint = endpoints.get(exchange.getRequestURI().getPath());
+		if (!"GET".equals(exchange.getRequestMethod())) {
+			status = 405;
+			body = error("only GET is supported");
+		} else if (endpoint == null) {
+			status = 404;
+			body = error("no such query: " + exchange.getRequestURI().getPath());
+		} else {
+			try {
+				body = "{\"result\":" + endpoint.answer(parseQuery(exchange.getRequestURI().getRawQuery())) + "}";
+			} catch (IllegalArgumentException iae) {
+				status = 400;
+				body = error(iae.getMessage());
+			} catch (NoSuchElementException nsee) {
+				status = 404;
+				body = error(nsee.getMessage());
+			} catch (RuntimeException e) {
+				status = 500;
+				body = error("the query failed inside the service");
+				e.printStackTrace();
+			}
+		}
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * An unknown station gives 404 here instead of the text
+	 * DataAnalysis answers with
+	 */
+	private String tripsByDestination(Map<String, String> params) {
+		String name = required(params, "station");
+		for (Station s : analysis.getAllStations()) {
+			if (s.getStationName().equals(name)) {
+				return quote(analysis.tripsByDestination(name));
+			}
+		}
+		throw new NoSuchElementException("no station named " + name);
+	}
+
+	/**
+	 * Gives the report row of one station, or of every
+	 * station when no id is asked for
+	 */
+	private String stationReport(Map<String, String> params) {
+		List<Station> stations = analysis.getAllStations();
+		if (!params.containsKey("id")) {
+			StringBuilder rows = new StringBuilder("[");
+			for (Station s : stations) {
+				if (rows.length() > 1) {
+					rows.append(',');
+				}
+				rows.append(quote(reports.stationReportOutput(s)));
+			}
+			return rows.append(']').toString();
+		}
+		int id = intParam(params, "id");
+		for (Station s : stations) {
+			if (s.getStationID() == id) {
+				return quote(reports.stationReportOutput(s));
+			}
+		}
+		throw new NoSuchElementException("no station with id " + id);
+	}
+
+	private static Map<String, String> parseQuery(String rawQuery) {
+		HashMap<String, String> params = new HashMap<String, String>();
+		if (rawQuery == null) {
+			return params;
+		}
+		for (String pair : rawQuery.split("&")) {
+			int equals = pair.indexOf('=');
+			if (equals > 0) {
+				params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+						URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+			}
+		}
+		return params;
+	}
+
+	private static String required(Map<String, String> params, String name) {
+		String value = params.get(name);
+		if (value == null) {
+			throw new IllegalArgumentException("missing parameter " + name);
+		}
+		return value;
+	}
+
+	private static int intParam(Map<String, String> params, String name) {
+		try {
+			return Integer.parseInt(required(params, name));
+		} catch (NumberFormatException nfe) {
+			throw new IllegalArgumentException("parameter " + name + " must be a whole number");
+		}
+	}
+
+	private static int intParam(Map<String, String> params, String name, int min, int max) {
+		int value = intParam(params, name);
+		if (value < min || value > max) {
+			throw new IllegalArgumentException("parameter " + name + " must be from " + min + " to " + max);
+		}
+		return value;
+	}
+
+	private static double distanceParam(Map<String, String> params, String name) {
+		double value;
+		try {
+			value = Double.parseDouble(required(params, name));
+		} catch (NumberFormatException nfe) {
+			throw new IllegalArgumentException("parameter " + name + " must be a number");
+		}
+		if (!(value >= 0.0) || Double.isInfinite(value)) {
+			throw new IllegalArgumentException("parameter " + name + " must be a distance of 0 or more");
+		}
+		return value;
+	}
+
+	private static String choiceParam(Map<String, String> params, String name, String... choices) {
+		String value = required(params, name);
+		for (String choice : choices) {
+			if (choice.equalsIgnoreCase(value)) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("parameter " + name + " must be one of " + String.join(", ", choices));
+	}
+
+	/**
+	 * A time of day as hours:minutes, such as 7:00 or 23:59
+	 */
+	private static String timeParam(Map<String, String> params, String name) {
+		String value = required(params, name);
+		Matcher time = TIME.matcher(value);
+		if (!time.matches() || Integer.parseInt(time.group(1)) > 23 || Integer.parseInt(time.group(2)) > 59) {
+			throw new IllegalArgumentException("parameter " + name + " must be a time such as 7:00");
+		}
+		return value;
+	}
+
+	/**
+	 * A date as month/day/year, such as 9/15/2017
+	 */
+	private static String dateParam(Map<String, String> params, String name) {
+		String value = required(params, name);
+		Matcher date = DATE.matcher(value);
+		if (!date.matches()) {
+			throw new IllegalArgumentException("parameter " + name + " must be a date such as 9/15/2017");
+		}
+		int month = Integer.parseInt(date.group(1));
+		int day = Integer.parseInt(date.group(2));
+		int year = Integer.parseInt(date.group(3));
+		if (month < 1 || month > 12 || day < 1 || day > YearMonth.of(year, month).lengthOfMonth()) {
+			throw new IllegalArgumentException("parameter " + name + " is not a real date");
+		}
+		return value;
+	}
+
+	private static String error(String message) {
+		return "{\"error\":" + quote(message) + "}";
+	}
+
+	/**
+	 * @return the text as a JSON string
+	 */
+	static String quote(String text) {
+		if (text == null) {
+			return "null";
+		}
+		StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c < 0x20) {
+				quoted.append(String.format("\\u%04x", (int) c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+}
@@ -0,0 +1,113 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Starts a QueryService on a free local port and keeps it busy
+ * from a number of client threads for a fixed time
+ * Each client sends the queries in turn and waits for each answer
+ * It reports the requests per second the service sustained and
+ * the median and 99th percentile latency
+ * Usage: java QueryServiceLoadBenchmark stationFile tripFile [clients] [seconds]
+ *
+ */
+public class QueryServiceLoadBenchmark {
+
+	private static final String[] QUERIES = {
+		"/trips-by-type?type=One%20Way&year=2017",
+		"/stations-by-status?status=Active&year=2016",
+		"/trips-by-destination?station=Philadelphia%20Zoo",
+		"/trips-by-passholder-type?type=Indego30",
+		"/most-traveled-bike",
+		"/trips-within-interval?from=0:00&to=5:00",
+		"/bikes-in-use?date=9/15/2017&time=7:00",
+		"/longest-trip",
+		"/popular-day?month=8",
+		"/close-stations",
+		"/top-station?rank=least&side=destination",
+		"/station-report?id=3010"
+	};
+
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		String fileNameStations = args.length > 0 ? args[0] : "indego-stations-2017-10-20.csv";
+		String fileNameTrips = args.length > 1 ? args[1] : "indego-trips-2017-q3.csv";
+		int clients = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+		int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+		QueryService service = new QueryService(new DataAnalysis(fileNameStations, fileNameTrips),
+				new StationReportPrinter(fileNameStations, fileNameTrips));
+		service.start(0);
+		String base = "http://localhost:" + service.getPort();
+		HttpClient client = HttpClient.newHttpClient();
+
+		// one pass first, so the lazy indexes are built before timing
+		for (String query : QUERIES) {
+			client.send(HttpRequest.newBuilder(URI.create(base + query)).build(),
+					HttpResponse.BodyHandlers.ofString());
+		}
+
+		long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+		ExecutorService pool = Executors.newFixedThreadPool(clients);
+		List<Callable<long[]>> workers = new ArrayList<>();
+		for (int c = 0; c < clients; c++) {
+			int offset = c;
+			workers.add(() -> {
+				long[] latencies = new long[1024];
+				int count = 0;
+				int failures = 0;
+				for (int q = offset; System.nanoTime() < deadline; q++) {
+					HttpRequest request = HttpRequest.newBuilder(
+							URI.create(base + QUERIES[q % QUERIES.length])).build();
+					long start = System.nanoTime();
+					HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+					if (count == latencies.length) {
+						latencies = Arrays.copyOf(latencies, count * 2);
+					}
+					latencies[count++] = System.nanoTime() - start;
+					if (response.statusCode() != 200) {
+						failures++;
+					}
+				}
+				long[] result = Arrays.copyOf(latencies, count + 1);
+				result[count] = failures;
+				return result;
+			});
+		}
+		long start = System.nanoTime();
+		long[] all = new long[0];
+		long failures = 0;
+		for (Future<long[]> result : pool.invokeAll(workers)) {
+			long[] latencies = result.get();
+			failures += latencies[latencies.length - 1];
+			int before = all.length;
+			all = Arrays.copyOf(all, before + latencies.length - 1);
+			System.arraycopy(latencies, 0, all, before, latencies.length - 1);
+		}
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		pool.shutdown();
+		service.stop();
+
+		Arrays.sort(all);
+		System.out.println(String.format(
+				"%d clients on %s: %.0f requests/s, p50 %.2f ms, p99 %.2f ms, %d failed",
+				clients, service.isVirtual() ? "virtual threads" : "a thread pool",
+				all.length / elapsed, percentile(all, 0.50) / 1e6, percentile(all, 0.99) / 1e6, failures));
+	}
+
+	private static long percentile(long[] sorted, double fraction) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)];
+	}
+}
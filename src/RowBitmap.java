@@ -0,0 +1,427 @@
+import java.util.Arrays;
+
+/**
+ * This class is a compressed set of trip table rows in the style
+ * of a Roaring bitmap
+ * Rows are split by their upper 16 bits into chunks of 65536,
+ * and each chunk that holds any rows gets a container
+ * A container with few rows keeps them as a sorted array, and
+ * one with more than 4096 switches to a 65536-bit bitmap, so
+ * neither sparse nor dense sets waste space
+ * Bitmaps are never changed once built, and AND, OR and
+ * AND NOT work container by container to give a new bitmap
+ *
+ */
+public class RowBitmap {
+
+	private static final int ARRAY_LIMIT = 4096;
+	private static final int WORDS = 1024;
+	private static final RowBitmap EMPTY = new RowBitmap(new char[0], new Container[0], 0);
+
+	private char[] keys;
+	private Container[] containers;
+	private int size;
+
+	private RowBitmap(char[] keys, Container[] containers, int size) {
+		this.keys = keys;
+		this.containers = containers;
+		this.size = size;
+	}
+
+	/**
+	 * @return a bitmap with no rows
+	 */
+	public static RowBitmap empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * @param rows are the rows to include, in any order
+	 * @return a bitmap holding the rows
+	 */
+	public static RowBitmap of(int... rows) {
+		int[] sorted = rows.clone();
+		Arrays.sort(sorted);
+		Builder builder = new Builder();
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || sorted[i] != sorted[i - 1]) {
+				builder.add(sorted[i]);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @param rows is the number of rows in the table
+	 * @return a bitmap holding rows 0 to rows - 1
+	 */
+	public static RowBitmap range(int rows) {
+		Builder builder = new Builder();
+		for (int row = 0; row < rows; row++) {
+			builder.add(row);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return the number of rows in the bitmap
+	 */
+	public int cardinality() {
+		int cardinality = 0;
+		for (int i = 0; i < size; i++) {
+			cardinality += containers[i].cardinality;
+		}
+		return cardinality;
+	}
+
+	/**
+	 * @return whether the bitmap holds no rows
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @param row is the row to look for
+	 * @return whether the bitmap holds the row
+	 */
+	public boolean contains(int row) {
+		int i = Arrays.binarySearch(keys, 0, size, (char) (row >>> 16));
+		return i >= 0 && containers[i].contains((char) row);
+	}
+
+	/**
+	 * @return the rows in ascending order
+	 */
+	public int[] toArray() {
+		int[] rows = new int[cardinality()];
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			n = containers[i].copyTo(rows, n, keys[i] << 16);
+		}
+		return rows;
+	}
+
+	/**
+	 * @return the rows in both bitmaps
+	 */
+	public RowBitmap and(RowBitmap other) {
+		char[] newKeys = new char[Math.min(size, other.size)];
+		Container[] newContainers = new Container[newKeys.length];
+		int n = 0;
+		int i = 0;
+		int j = 0;
+		while (i < size && j < other.size) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			} else if (keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				Container c = containers[i].and(other.containers[j]);
+				if (c.cardinality > 0) {
+					newKeys[n] = keys[i];
+					newContainers[n++] = c;
+				}
+				i++;
+				j++;
+			}
+		}
+		return new RowBitmap(newKeys, newContainers, n);
+	}
+
+	/**
+	 * @return the rows in either bitmap
+	 */
+	public RowBitmap or(RowBitmap other) {
+		char[] newKeys = new char[size + other.size];
+		Container[] newContainers = new Container[newKeys.length];
+		int n = 0;
+		int i = 0;
+		int j = 0;
+		while (i < size || j < other.size) {
+			if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+				newKeys[n] = keys[i];
+				newContainers[n++] = containers[i++];
+			} else if (i == size || keys[i] > other.keys[j]) {
+				newKeys[n] = other.keys[j];
+				newContainers[n++] = other.containers[j++];
+			} else {
+				newKeys[n] = keys[i];
+				newContainers[n++] = containers[i++].or(other.containers[j++]);
+			}
+		}
+		return new RowBitmap(newKeys, newContainers, n);
+	}
+
+	/**
+	 * @return the rows in this bitmap but not the other
+	 */
+	public RowBitmap andNot(RowBitmap other) {
+		char[] newKeys = new char[size];
+		Container[] newContainers = new Container[size];
+		int n = 0;
+		int j = 0;
+		for (int i = 0; i < size; i++) {
+			while (j < other.size && other.keys[j] < keys[i]) {
+				j++;
+			}
+			Container c = containers[i];
+			if (j < other.size && other.keys[j] == keys[i]) {
+				c = c.andNot(other.containers[j]);
+			}
+			if (c.cardinality > 0) {
+				newKeys[n] = keys[i];
+				newContainers[n++] = c;
+			}
+		}
+		return new RowBitmap(newKeys, newContainers, n);
+	}
+
+	/**
+	 * @return the number of bytes the containers take up
+	 */
+	public long estimateBytes() {
+		long bytes = 2L * keys.length;
+		for (int i = 0; i < size; i++) {
+			bytes += containers[i].words != null ? 8L * WORDS : 2L * containers[i].array.length;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Collects rows added in ascending order into a bitmap
+	 */
+	public static class Builder {
+
+		private char[] keys = new char[4];
+		private Container[] containers = new Container[4];
+		private int size;
+		private int lastRow = -1;
+
+		/**
+		 * @param row is the next row, larger than any added so far
+		 */
+		public void add(int row) {
+			if (row <= lastRow) {
+				throw new IllegalArgumentException("rows must be added in ascending order: " + row);
+			}
+			lastRow = row;
+			char key = (char) (row >>> 16);
+			if (size == 0 || keys[size - 1] != key) {
+				if (size == keys.length) {
+					keys = Arrays.copyOf(keys, size * 2);
+					containers = Arrays.copyOf(containers, size * 2);
+				}
+				keys[size] = key;
+				containers[size++] = new Container(new char[4], 0);
+			}
+			containers[size - 1].append((char) row);
+		}
+
+		/**
+		 * @return the bitmap of the rows added so far
+		 */
+		public RowBitmap build() {
+			Container[] built = new Container[size];
+			for (int i = 0; i < size; i++) {
+				built[i] = containers[i].trimmed();
+			}
+			return new RowBitmap(Arrays.copyOf(keys, size), built, size);
+		}
+	}
+
+	/**
+	 * The rows of one 65536-row chunk, held in a sorted array
+	 * or in a bitmap depending on how many there are
+	 */
+	private static class Container {
+
+		private char[] array;
+		private long[] words;
+		private int cardinality;
+
+		private Container(char[] array, int cardinality) {
+			this.array = array;
+			this.cardinality = cardinality;
+		}
+
+		private Container(long[] words, int cardinality) {
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		/**
+		 * Builds the smaller form for a bitmap of rows
+		 */
+		private static Container fromWords(long[] words) {
+			int cardinality = 0;
+			for (long word : words) {
+				cardinality += Long.bitCount(word);
+			}
+			if (cardinality > ARRAY_LIMIT) {
+				return new Container(words, cardinality);
+			}
+			char[] array = new char[cardinality];
+			int n = 0;
+			for (int w = 0; w < WORDS; w++) {
+				long word = words[w];
+				while (word != 0) {
+					array[n++] = (char) (w * 64 + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return new Container(array, cardinality);
+		}
+
+		private void append(char value) {
+			if (words != null) {
+				words[value >>> 6] |= 1L << value;
+			} else if (cardinality == ARRAY_LIMIT) {
+				words = toWords();
+				array = null;
+				words[value >>> 6] |= 1L << value;
+			} else {
+				if (cardinality == array.length) {
+					array = Arrays.copyOf(array, Math.min(ARRAY_LIMIT, cardinality * 2));
+				}
+				array[cardinality] = value;
+			}
+			cardinality++;
+		}
+
+		private Container trimmed() {
+			if (array != null && array.length != cardinality) {
+				return new Container(Arrays.copyOf(array, cardinality), cardinality);
+			}
+			return this;
+		}
+
+		private long[] toWords() {
+			if (words != null) {
+				return words.clone();
+			}
+			long[] bits = new long[WORDS];
+			for (int i = 0; i < cardinality; i++) {
+				bits[array[i] >>> 6] |= 1L << array[i];
+			}
+			return bits;
+		}
+
+		private boolean contains(char value) {
+			if (words != null) {
+				return (words[value >>> 6] & (1L << value)) != 0;
+			}
+			return Arrays.binarySearch(array, 0, cardinality, value) >= 0;
+		}
+
+		private int copyTo(int[] rows, int n, int high) {
+			if (words == null) {
+				for (int i = 0; i < cardinality; i++) {
+					rows[n++] = high | array[i];
+				}
+				return n;
+			}
+			for (int w = 0; w < WORDS; w++) {
+				long word = words[w];
+				while (word != 0) {
+					rows[n++] = high | (w * 64 + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return n;
+		}
+
+		private Container and(Container other) {
+			if (words == null && other.words == null) {
+				char[] result = new char[Math.min(cardinality, other.cardinality)];
+				int n = 0;
+				int i = 0;
+				int j = 0;
+				while (i < cardinality && j < other.cardinality) {
+					if (array[i] < other.array[j]) {
+						i++;
+					} else if (array[i] > other.array[j]) {
+						j++;
+					} else {
+						result[n++] = array[i];
+						i++;
+						j++;
+					}
+				}
+				return new Container(Arrays.copyOf(result, n), n);
+			}
+			if (words == null || other.words == null) {
+				Container sparse = words == null ? this : other;
+				Container dense = words == null ? other : this;
+				char[] result = new char[sparse.cardinality];
+				int n = 0;
+				for (int i = 0; i < sparse.cardinality; i++) {
+					if (dense.contains(sparse.array[i])) {
+						result[n++] = sparse.array[i];
+					}
+				}
+				return new Container(Arrays.copyOf(result, n), n);
+			}
+			long[] result = new long[WORDS];
+			for (int w = 0; w < WORDS; w++) {
+				result[w] = words[w] & other.words[w];
+			}
+			return fromWords(result);
+		}
+
+		private Container or(Container other) {
+			if (words == null && other.words == null && cardinality + other.cardinality <= ARRAY_LIMIT) {
+				char[] result = new char[cardinality + other.cardinality];
+				int n = 0;
+				int i = 0;
+				int j = 0;
+				while (i < cardinality || j < other.cardinality) {
+					if (j == other.cardinality || (i < cardinality && array[i] < other.array[j])) {
+						result[n++] = array[i++];
+					} else if (i == cardinality || array[i] > other.array[j]) {
+						result[n++] = other.array[j++];
+					} else {
+						result[n++] = array[i++];
+						j++;
+					}
+				}
+				return new Container(Arrays.copyOf(result, n), n);
+			}
+			long[] result = toWords();
+			if (other.words != null) {
+				for (int w = 0; w < WORDS; w++) {
+					result[w] |= other.words[w];
+				}
+			} else {
+				for (int i = 0; i < other.cardinality; i++) {
+					result[other.array[i] >>> 6] |= 1L << other.array[i];
+				}
+			}
+			return fromWords(result);
+		}
+
+		private Container andNot(Container other) {
+			if (words == null) {
+				char[] result = new char[cardinality];
+				int n = 0;
+				for (int i = 0; i < cardinality; i++) {
+					if (!other.contains(array[i])) {
+						result[n++] = array[i];
+					}
+				}
+				return new Container(Arrays.copyOf(result, n), n);
+			}
+			long[] result = words.clone();
+			if (other.words != null) {
+				for (int w = 0; w < WORDS; w++) {
+					result[w] &= ~other.words[w];
+				}
+			} else {
+				for (int i = 0; i < other.cardinality; i++) {
+					result[other.array[i] >>> 6] &= ~(1L << other.array[i]);
+				}
+			}
+			return fromWords(result);
+		}
+	}
+}
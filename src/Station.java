@@ -15,6 +15,8 @@ public class Station {
 	private int goLiveYear;
 	private int goLiveMonth;
 	private int goLiveDay;
+	private int stationNameCode;
+	private int statusCode;
 	
 	/**
 	 * New stations are constructed when station files are read
@@ -25,6 +27,7 @@ public class Station {
 	 * @param status is whether or not the station is active
 	 * We also partition the string representing the go live date to 
 	 * allow user interaction with the actual year, month, and date
+	 * The name and status are also encoded in the shared dictionary
 	 */
 	public Station(int stationID, String stationName, String goLiveDate, String status) {
 		super();
@@ -32,6 +35,8 @@ public class Station {
 		this.stationName = stationName;
 		this.goLiveDate = goLiveDate;
 		this.status = status;
+		this.stationNameCode = StringDictionary.shared().encode(stationName);
+		this.statusCode = StringDictionary.shared().encode(status);
 		partitionGoLiveDate();
 	}
 
@@ -75,6 +80,20 @@ public class Station {
 		return status;
 	}
 
+	/**
+	 * @return the code of the stationName in the shared dictionary
+	 */
+	public int getStationNameCode() {
+		return stationNameCode;
+	}
+
+	/**
+	 * @return the code of the status in the shared dictionary
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
 	/**
 	 * @return the goLiveYear
 	 */
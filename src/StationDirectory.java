@@ -0,0 +1,94 @@
+import java.util.Arrays;
+
+/**
+ * This class gives every station ID seen in the trip data a dense
+ * slot number from 0 to size() - 1, in ascending ID order
+ * Per-station data can then live in plain arrays indexed by slot
+ * When the IDs are close together, as Indego's are, a direct
+ * lookup table is used; otherwise slots are found by binary search
+ *
+ */
+public class StationDirectory {
+
+	private static final int MAX_TABLE_SPREAD = 4;
+
+	private int[] stationIDs;
+	private int[] slotTable;
+	private int minimumID;
+
+	/**
+	 * Collects the start and end stations of all trips in a table
+	 * @param trips are the trips to scan
+	 */
+	public StationDirectory(TripTable trips) {
+		int[] ids = new int[trips.size() * 2];
+		for (int row = 0; row < trips.size(); row++) {
+			ids[2 * row] = trips.getStartStation(row);
+			ids[2 * row + 1] = trips.getEndStation(row);
+		}
+		index(ids);
+	}
+
+	/**
+	 * Gives slots to a known set of stations, such as those in
+	 * the station file, before any trips are read
+	 * @param stationIDs are the station IDs, in any order
+	 */
+	public StationDirectory(int[] stationIDs) {
+		index(stationIDs.clone());
+	}
+
+	private void index(int[] ids) {
+		Arrays.sort(ids);
+		int unique = 0;
+		for (int i = 0; i < ids.length; i++) {
+			if (i == 0 || ids[i] != ids[i - 1]) {
+				ids[unique++] = ids[i];
+			}
+		}
+		stationIDs = Arrays.copyOf(ids, unique);
+
+		if (unique > 0) {
+			minimumID = stationIDs[0];
+			long spread = (long) stationIDs[unique - 1] - minimumID + 1;
+			if (spread <= (long) unique * MAX_TABLE_SPREAD) {
+				slotTable = new int[(int) spread];
+				Arrays.fill(slotTable, -1);
+				for (int slot = 0; slot < unique; slot++) {
+					slotTable[stationIDs[slot] - minimumID] = slot;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param stationID is the station to look up
+	 * @return the slot of the station, or -1 if no trip used it
+	 */
+	public int slotOf(int stationID) {
+		if (slotTable != null) {
+			long offset = (long) stationID - minimumID;
+			if (offset < 0 || offset >= slotTable.length) {
+				return -1;
+			}
+			return slotTable[(int) offset];
+		}
+		int slot = Arrays.binarySearch(stationIDs, stationID);
+		return slot < 0 ? -1 : slot;
+	}
+
+	/**
+	 * @param slot is a slot number
+	 * @return the station ID in that slot
+	 */
+	public int stationIDAt(int slot) {
+		return stationIDs[slot];
+	}
+
+	/**
+	 * @return the number of stations
+	 */
+	public int size() {
+		return stationIDs.length;
+	}
+}
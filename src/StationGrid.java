@@ -0,0 +1,260 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class is a uniform latitude/longitude grid over station
+ * locations for finding stations near a point
+ * Points are handed in as parallel latitude and longitude arrays,
+ * and every query answers with indexes into those arrays
+ * A point with a latitude or longitude of -1.0 or NaN has no
+ * location and is left out of the grid
+ * Distances are great-circle distances in kilometres
+ * The grid does not wrap around the 180th meridian, so a
+ * search that would cross it looks at every column instead
+ *
+ */
+public class StationGrid {
+
+	public static final double EARTH_RADIUS_KM = 6371.0088;
+	private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+	private static final int MIN_CELLS = 64;
+	private static final int CELLS_PER_POINT = 4;
+
+	private double[] lats;
+	private double[] longs;
+	private double cellDegrees;
+	private double minLat;
+	private double minLong;
+	private int rows;
+	private int cols;
+	private int[] cellStart;
+	private int[] cellMembers;
+	private int located;
+
+	/**
+	 * Sorts the points into square cells of roughly the given
+	 * size, which works best when it is close to the radius
+	 * most queries use
+	 * Cells are made larger when the points are so spread out
+	 * that the grid would have far more cells than points
+	 * @param lats are the point latitudes in degrees
+	 * @param longs are the point longitudes in degrees
+	 * @param cellKm is the height of a cell in kilometres
+	 */
+	public StationGrid(double[] lats, double[] longs, double cellKm) {
+		if (lats.length != longs.length) {
+			throw new IllegalArgumentException("latitude and longitude counts differ");
+		}
+		if (!(cellKm > 0)) {
+			throw new IllegalArgumentException("cell size must be positive: " + cellKm);
+		}
+		this.lats = lats.clone();
+		this.longs = longs.clone();
+		this.cellDegrees = cellKm / KM_PER_DEGREE;
+
+		double maxLat = Double.NEGATIVE_INFINITY;
+		double maxLong = Double.NEGATIVE_INFINITY;
+		minLat = Double.POSITIVE_INFINITY;
+		minLong = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < lats.length; i++) {
+			if (hasLocation(i)) {
+				located++;
+				minLat = Math.min(minLat, lats[i]);
+				maxLat = Math.max(maxLat, lats[i]);
+				minLong = Math.min(minLong, longs[i]);
+				maxLong = Math.max(maxLong, longs[i]);
+			}
+		}
+		if (located == 0) {
+			minLat = 0;
+			minLong = 0;
+			rows = 1;
+			cols = 1;
+		} else {
+			long maxCells = Math.max(MIN_CELLS, (long) located * CELLS_PER_POINT);
+			while (((maxLat - minLat) / cellDegrees + 1) * ((maxLong - minLong) / cellDegrees + 1) > maxCells) {
+				cellDegrees *= 2;
+			}
+			rows = (int) ((maxLat - minLat) / cellDegrees) + 1;
+			cols = (int) ((maxLong - minLong) / cellDegrees) + 1;
+		}
+
+		cellStart = new int[rows * cols + 1];
+		int[] cellOf = new int[lats.length];
+		for (int i = 0; i < lats.length; i++) {
+			if (hasLocation(i)) {
+				cellOf[i] = cell(rowOf(lats[i]), colOf(longs[i]));
+				cellStart[cellOf[i] + 1]++;
+			}
+		}
+		for (int c = 0; c < rows * cols; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		cellMembers = new int[located];
+		int[] fill = Arrays.copyOf(cellStart, rows * cols);
+		for (int i = 0; i < lats.length; i++) {
+			if (hasLocation(i)) {
+				cellMembers[fill[cellOf[i]]++] = i;
+			}
+		}
+	}
+
+	/**
+	 * Great-circle distance by the Haversine formula
+	 * @return the distance between two points in kilometres
+	 */
+	public static double haversine(double lat1, double long1, double lat2, double long2) {
+		double dLat = Math.toRadians(lat2 - lat1);
+		double dLong = Math.toRadians(long2 - long1);
+		double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+				Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+				Math.sin(dLong / 2) * Math.sin(dLong / 2);
+		return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+	}
+
+	/**
+	 * @return whether the point at an index has a usable location
+	 */
+	public boolean hasLocation(int index) {
+		return !Double.isNaN(lats[index]) && !Double.isNaN(longs[index]) &&
+				lats[index] != -1.0 && longs[index] != -1.0;
+	}
+
+	/**
+	 * Finds every point within a distance of a location
+	 * @param lat is the latitude to search around
+	 * @param lon is the longitude to search around
+	 * @param radiusKm is the search radius in kilometres
+	 * @return the indexes of the points, nearest first
+	 */
+	public int[] withinRadius(double lat, double lon, double radiusKm) {
+		ArrayList<Integer> found = new ArrayList<>();
+		collect(lat, lon, radiusKm, -1, found);
+		return sortByDistance(found, lat, lon);
+	}
+
+	/**
+	 * Finds the points closest to a location
+	 * The search radius starts at one cell and doubles until
+	 * enough points are inside it, so only nearby cells are read
+	 * @param lat is the latitude to search around
+	 * @param lon is the longitude to search around
+	 * @param k is the number of points wanted
+	 * @return the indexes of up to k points, nearest first
+	 */
+	public int[] nearest(double lat, double lon, int k) {
+		if (k <= 0 || located == 0) {
+			return new int[0];
+		}
+		int wanted = Math.min(k, located);
+		double radiusKm = cellDegrees * KM_PER_DEGREE;
+		ArrayList<Integer> found = new ArrayList<>();
+		while (true) {
+			found.clear();
+			collect(lat, lon, radiusKm, -1, found);
+			if (found.size() >= wanted || radiusKm >= Math.PI * EARTH_RADIUS_KM) {
+				break;
+			}
+			radiusKm *= 2;
+		}
+		int[] sorted = sortByDistance(found, lat, lon);
+		return Arrays.copyOf(sorted, Math.min(wanted, sorted.length));
+	}
+
+	/**
+	 * Counts each pair of located points no more than
+	 * a given distance apart once
+	 * @param radiusKm is the largest separation in kilometres
+	 * @return the number of close pairs
+	 */
+	public int countPairsWithin(double radiusKm) {
+		int pairs = 0;
+		ArrayList<Integer> found = new ArrayList<>();
+		for (int i = 0; i < lats.length; i++) {
+			if (hasLocation(i)) {
+				found.clear();
+				collect(lats[i], longs[i], radiusKm, i, found);
+				pairs += found.size();
+			}
+		}
+		return pairs;
+	}
+
+	/**
+	 * Adds the points within the radius to a list, reading
+	 * only the cells that overlap the radius's bounding box
+	 * When above is zero or more, only points with a larger
+	 * index are added
+	 */
+	private void collect(double lat, double lon, double radiusKm, int above, ArrayList<Integer> found) {
+		if (located == 0 || Double.isNaN(lat) || Double.isNaN(lon) || !(radiusKm >= 0)) {
+			return;
+		}
+		double angle = radiusKm / EARTH_RADIUS_KM;
+		double dLat = Math.toDegrees(angle);
+		int firstRow = rowOf(lat - dLat);
+		int lastRow = rowOf(lat + dLat);
+		int firstCol = 0;
+		int lastCol = cols - 1;
+		if (lat - dLat > -90 && lat + dLat < 90) {
+			double spread = Math.sin(angle) / Math.cos(Math.toRadians(lat));
+			if (spread < 1) {
+				double dLong = Math.toDegrees(Math.asin(spread));
+				if (lon - dLong >= -180 && lon + dLong <= 180) {
+					firstCol = colOf(lon - dLong);
+					lastCol = colOf(lon + dLong);
+				}
+			}
+		}
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int col = firstCol; col <= lastCol; col++) {
+				int c = cell(row, col);
+				for (int m = cellStart[c]; m < cellStart[c + 1]; m++) {
+					int index = cellMembers[m];
+					if (index > above && haversine(lat, lon, lats[index], longs[index]) <= radiusKm) {
+						found.add(index);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Orders indexes by distance from a location, with
+	 * ties broken by index
+	 */
+	private int[] sortByDistance(ArrayList<Integer> found, double lat, double lon) {
+		Integer[] order = found.toArray(new Integer[0]);
+		double[] distance = new double[lats.length];
+		for (int index : order) {
+			distance[index] = haversine(lat, lon, lats[index], longs[index]);
+		}
+		Arrays.sort(order, (a, b) -> {
+			int byDistance = Double.compare(distance[a], distance[b]);
+			return byDistance != 0 ? byDistance : Integer.compare(a, b);
+		});
+		int[] result = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			result[i] = order[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Rows and columns past the edge of the grid are
+	 * clamped to the edge
+	 */
+	private int rowOf(double lat) {
+		double row = Math.floor((lat - minLat) / cellDegrees);
+		return (int) Math.max(0, Math.min(rows - 1, row));
+	}
+
+	private int colOf(double lon) {
+		double col = Math.floor((lon - minLong) / cellDegrees);
+		return (int) Math.max(0, Math.min(cols - 1, col));
+	}
+
+	private int cell(int row, int col) {
+		return row * cols + col;
+	}
+}
@@ -4,6 +4,7 @@
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Scanner;
 
@@ -15,7 +16,56 @@ public class StationReader {
 	private String goLiveDate;
 	private String status;
 	
+	/**
+	 * Reads the station file through its snapshot
+	 * @param inputFileName is the file path for the station file
+	 */
 	public StationReader(String inputFileName) throws FileNotFoundException {
+		this(inputFileName, true);
+	}
+	
+	/**
+	 * @param inputFileName is the file path for the station file
+	 * @param useSnapshot is true to load an up to date snapshot
+	 * when there is one, and to save one after parsing
+	 */
+	public StationReader(String inputFileName, boolean useSnapshot) throws FileNotFoundException {
+		if (!useSnapshot) {
+			readWithScanner(inputFileName);
+			return;
+		}
+		if (!new File(inputFileName).isFile()) {
+			throw new FileNotFoundException(inputFileName);
+		}
+		try {
+			eachStation = DataSnapshot.readStations(inputFileName);
+		} catch (IOException ioe) {
+			eachStation = null;
+		}
+		if (eachStation == null) {
+			DataSnapshot.Source source;
+			try {
+				source = DataSnapshot.source(inputFileName);
+			} catch (IOException ioe) {
+				source = null;
+			}
+			readWithScanner(inputFileName);
+			if (source != null) {
+				try {
+					DataSnapshot.writeStations(inputFileName, source, eachStation);
+				} catch (IOException ioe) {
+					System.out.println("Could not save a snapshot of "
+							+ inputFileName + ": " + ioe.getMessage());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Reads each line with a Scanner and splits it on commas
+	 * @param inputFileName is the file path for the station file
+	 */
+	private void readWithScanner(String inputFileName) throws FileNotFoundException {
 		eachStation = new ArrayList<Station>();
 //		try {
 			File inputFile=new File(inputFileName);
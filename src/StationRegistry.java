@@ -0,0 +1,124 @@
+/**
+ * This class records where each station has been seen in the
+ * trip data, built with one pass over the trips
+ * Every trip gives a fix for its start station and one for its
+ * end station, and fixes with a latitude or longitude of -1.0
+ * are skipped
+ * For each station it keeps the first fix in file order, the
+ * centroid of all fixes and the number of fixes, in primitive
+ * arrays indexed by StationDirectory slot
+ * The first departure fix is kept as well, since that is where
+ * the station grid places a station
+ * Stations with no fixes report -1.0 for every coordinate,
+ * the same as missing data in the trip file
+ *
+ */
+public class StationRegistry {
+
+	private StationDirectory directory;
+	private double[] firstLat;
+	private double[] firstLong;
+	private double[] departureLat;
+	private double[] departureLong;
+	private boolean[] departed;
+	private double[] latSum;
+	private double[] longSum;
+	private int[] fixes;
+
+	/**
+	 * Scans the trips once and records every station fix
+	 * @param trips are the trips to scan
+	 * @param directory gives each station its slot
+	 */
+	public StationRegistry(TripTable trips, StationDirectory directory) {
+		this.directory = directory;
+		int stations = directory.size();
+		firstLat = new double[stations];
+		firstLong = new double[stations];
+		departureLat = new double[stations];
+		departureLong = new double[stations];
+		departed = new boolean[stations];
+		latSum = new double[stations];
+		longSum = new double[stations];
+		fixes = new int[stations];
+		for (int row = 0; row < trips.size(); row++) {
+			int start = directory.slotOf(trips.getStartStation(row));
+			if (!departed[start] && trips.getStartLat(row) != -1.0 && trips.getStartLong(row) != -1.0) {
+				departureLat[start] = trips.getStartLat(row);
+				departureLong[start] = trips.getStartLong(row);
+				departed[start] = true;
+			}
+			record(start, trips.getStartLat(row), trips.getStartLong(row));
+			record(directory.slotOf(trips.getEndStation(row)), trips.getEndLat(row), trips.getEndLong(row));
+		}
+	}
+
+	private void record(int slot, double lat, double lon) {
+		if (lat == -1.0 || lon == -1.0) {
+			return;
+		}
+		if (fixes[slot] == 0) {
+			firstLat[slot] = lat;
+			firstLong[slot] = lon;
+		}
+		latSum[slot] += lat;
+		longSum[slot] += lon;
+		fixes[slot]++;
+	}
+
+	/**
+	 * @return the number of valid fixes seen for the station
+	 */
+	public int getFixCount(int stationID) {
+		int slot = directory.slotOf(stationID);
+		return slot < 0 ? 0 : fixes[slot];
+	}
+
+	/**
+	 * @return the latitude of the station's first fix, or -1.0
+	 */
+	public double getFirstLat(int stationID) {
+		int slot = directory.slotOf(stationID);
+		return slot < 0 || fixes[slot] == 0 ? -1.0 : firstLat[slot];
+	}
+
+	/**
+	 * @return the longitude of the station's first fix, or -1.0
+	 */
+	public double getFirstLong(int stationID) {
+		int slot = directory.slotOf(stationID);
+		return slot < 0 || fixes[slot] == 0 ? -1.0 : firstLong[slot];
+	}
+
+	/**
+	 * @return the latitude of the first trip to leave the station, or -1.0
+	 */
+	public double getFirstDepartureLat(int stationID) {
+		int slot = directory.slotOf(stationID);
+		return slot < 0 || !departed[slot] ? -1.0 : departureLat[slot];
+	}
+
+	/**
+	 * @return the longitude of the first trip to leave the station, or -1.0
+	 */
+	public double getFirstDepartureLong(int stationID) {
+		int slot = directory.slotOf(stationID);
+		return slot < 0 || !departed[slot] ? -1.0 : departureLong[slot];
+	}
+
+	/**
+	 * @return the mean latitude of the station's fixes, or -1.0
+	 */
+	public double getCentroidLat(int stationID) {
+		int slot = directory.slotOf(stationID);
+		return slot < 0 || fixes[slot] == 0 ? -1.0 : latSum[slot] / fixes[slot];
+	}
+
+	/**
+	 * @return the mean longitude of the station's fixes, or -1.0
+	 */
+	public double getCentroidLong(int stationID) {
+		int slot = directory.slotOf(stationID);
+		return slot < 0 || fixes[slot] == 0 ? -1.0 : longSum[slot] / fixes[slot];
+	}
+}
@@ -3,41 +3,47 @@
  * in the Indego network
  * It uses station and trip information to  present
  * interesting facts about each station
+ * Every per-station figure is worked out in one pass over
+ * the trips when the printer is built, so each report row
+ * is only a handful of array lookups
  */
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
-import java.util.ArrayList;
+import java.util.List;
 
 public class StationReportPrinter {
 
-	private ArrayList<Station> stations;
-	private ArrayList<Trip> trips;
+	private List<Station> stations;
+	private TripTable trips;
+	private StationAggregates aggregates;
+	private OriginDestinationMatrix flows;
 	
 	/**
 	 * An SRP object requires two files, station
 	 * and trip, to analyze and will create array lists
 	 * of both the trips and the stations from which it
 	 * will base computations
+	 * The files are read through the DatasetRegistry, so an
+	 * analysis of the same files shares the same copy
 	 * @param fileNameStation is file path for station data file
 	 * @param fileNameTrip is file path for trip data file
 	 */
 	public StationReportPrinter(String fileNameStation, String fileNameTrip) {
-		StationReader sr;
 		try {
-			sr = new StationReader(fileNameStation);
-			stations = sr.getEachStation();
+			stations = DatasetRegistry.stations(fileNameStation);
 		} catch (FileNotFoundException e) {
 			System.out.println("Please enter a valid station"
 					+ " file to print a station report!");
 			System.exit(0);
 //			e.printStackTrace();
 		}
-		TripReader tr;
 		try {
-			tr = new TripReader(fileNameTrip);
-			trips = tr.getEachTrip();
+			trips = DatasetRegistry.trips(fileNameTrip);
+			StationDirectory directory = new StationDirectory(trips);
+			aggregates = new StationAggregates(trips, directory);
+			flows = new OriginDestinationMatrix(trips, directory);
 		} catch (FileNotFoundException e) {
 			System.out.println("Please enter a valid trip"
 					+ " file to print a station report!");
@@ -80,8 +86,8 @@ public class StationReportPrinter {
 			try {
 				PrintWriter out = new PrintWriter(newFile);
 				out.write("station id,station name,total number of trips, "
-						+ "average trip duration (time), average distance, "
-						+ "max trip duration (time), max distance, "
+						+ "average trip duration (time), average distance (km), "
+						+ "max trip duration (time), max distance (km), "
 						+ "percent one-way trips, difference between "
 						+ "departing trips and destinations\n");
 				for (Station s : stations) {
@@ -122,23 +128,13 @@ public class StationReportPrinter {
 	 * This method calculates the difference between
 	 * the rides that started at a station and
 	 * the rides that ended at that station
+	 * Round-trips count on both sides, so they cancel out
 	 * @param stationInput is the station to check
 	 * @return the difference between start and end trips
 	 */
 	private int differenceStartEnd(Station stationInput) {
-		int tripsOnlyStart = 0;
-		int tripsOnlyEnd = 0;
-		for (Trip t : trips) {
-			if (t.getStartStation() == stationInput.getStationID() && 
-					t.getEndStation() != stationInput.getStationID()) {
-				tripsOnlyStart++;
-			}
-			if (t.getStartStation() != stationInput.getStationID() && 
-					t.getEndStation() == stationInput.getStationID()) {
-				tripsOnlyEnd++;
-			}
-		}
-		return tripsOnlyStart - tripsOnlyEnd;
+		return flows.getDepartures(stationInput.getStationID())
+				- flows.getArrivals(stationInput.getStationID());
 	}
 
 	/**
@@ -148,18 +144,9 @@ public class StationReportPrinter {
 	 * @return the percent of trips
 	 */
 	private String percentageOneWayTrips(Station stationInput) {
-		double percentOneWay = 0.0;
-		double totalOneWay = 0.0;
-		int totalTrips = 0;
-		for (Trip t : trips) {
-			if (t.getStartStation() == stationInput.getStationID()) {
-				totalTrips++;
-				if (t.getTripRouteCategory().equals("\"One Way\"")) {
-					totalOneWay++;
-				}
-			}
-		}
-		percentOneWay = 100 * totalOneWay / totalTrips;
+		double totalOneWay = aggregates.getOneWayTrips(stationInput.getStationID());
+		int totalTrips = aggregates.getDepartures(stationInput.getStationID());
+		double percentOneWay = 100 * totalOneWay / totalTrips;
 		if (Double.isNaN(percentOneWay)) {
 			String noTrips = "No location data available";
 			return noTrips;
@@ -169,28 +156,15 @@ public class StationReportPrinter {
 	}
 
 	/**.
-	 * Cycles through all trips that departed from
-	 * a station and finds the length of the longest trip
+	 * Finds the length of the longest trip that
+	 * departed from a station
 	 * It excludes any station data with absent
 	 * lat or long information
 	 * @param stationInput is the station to check
 	 * @return the length of the longest trip
 	 */
 	private String maxTripDistanceLookup(Station stationInput) {
-		double maxDistance = 0.0;
-		for (Trip t : trips) {
-			if (t.getStartLat() != -1.0 && t.getStartLong() != -1.0
-					&& t.getEndLat() != -1.0
-					&& t.getEndLong() != -1.0
-					&& t.getStartStation()
-					== stationInput.getStationID()) {
-				double tripDistance = Math.sqrt(Math.pow((t.getStartLat()-t.getEndLat()), 2) +
-						Math.pow((t.getStartLong()-t.getEndLong()), 2));
-				if (tripDistance > maxDistance) {
-					maxDistance = tripDistance;
-				}
-			}
-		}
+		double maxDistance = aggregates.getMaxDistance(stationInput.getStationID());
 		if (Double.isNaN(maxDistance)) {
 			String noTrips = "No location data available";
 			return noTrips;
@@ -200,44 +174,24 @@ public class StationReportPrinter {
 	}
 
 	/**.
-	 * Cycles through all the trips that left a station
-	 * to calculate the one that lasted the longest
+	 * Finds the trip that left a station and
+	 * lasted the longest
 	 * @param stationInput is the station to check
 	 * @return the longest duration by time
 	 */
 	private int maxTripDurationLookup(Station stationInput) {
-		int maxDuration = 0;
-		for (Trip t : trips)  {
-			if (t.getStartStation() == stationInput.getStationID()) {
-				if (t.getDuration() > maxDuration) {
-					maxDuration = t.getDuration();
-				}
-			}
-		}
-		return maxDuration;
+		return aggregates.getMaxDuration(stationInput.getStationID());
 	}
 
 	/**
-	 * Cycles through the trips that left a station
-	 * to find the average distance of those trips
+	 * Finds the average distance of the trips
+	 * that left a station
 	 * @param stationInput the station to check
 	 * @return the average distance of trips
 	 */
 	private String averageTripDistanceLookup(Station stationInput) {
-		double averageTripDistance = 0.0;
-		double totalTripDistance = 0.0;
-		int totalTrips = 0;
-		for (Trip t : trips) {
-			if (t.getStartLat() != -1.0 && t.getStartLong() != -1.0 &&
-					t.getEndLat() != -1.0 && t.getEndLong() != -1.0 &&
-					t.getStartStation() == stationInput.getStationID()) {
-				double tripDistance = Math.sqrt(Math.pow((t.getStartLat()-t.getEndLat()), 2) +
-						Math.pow((t.getStartLong()-t.getEndLong()), 2));
-				totalTripDistance = totalTripDistance + tripDistance;
-				totalTrips++;
-			}
-		}
-		averageTripDistance = totalTripDistance / totalTrips;
+		double averageTripDistance = aggregates.getDistanceSum(stationInput.getStationID())
+				/ aggregates.getDistanceCount(stationInput.getStationID());
 		if (Double.isNaN(averageTripDistance)) {
 			String noTrips = "No location data available";
 			return noTrips;
@@ -247,22 +201,16 @@ public class StationReportPrinter {
 	}
 
 	/**
-	 * Cycles through all the trips that left a station 
-	 * to calculate the average duration
+	 * Finds the average duration of the trips
+	 * that left a station
 	 * @param stationInput is the station to check
 	 * @return the average duration by time
 	 */
 	private String averageTripDurationLookup(Station stationInput) {
-
 		double averageTripDuration = 0.0;
-		double totalTripDuration = 0.0;
-		int totalTrips = 0;
-		for (Trip t : trips) {
-			if (t.getStartStation() == stationInput.getStationID()) {
-				totalTrips++;
-				totalTripDuration = totalTripDuration + t.getDuration();
-			}
-		averageTripDuration = totalTripDuration / totalTrips;
+		if (trips.size() > 0) {
+			averageTripDuration = (double) aggregates.getDurationSum(stationInput.getStationID())
+					/ aggregates.getDepartures(stationInput.getStationID());
 		}
 		return String.format("%.03f", averageTripDuration);
 	}
@@ -275,19 +223,6 @@ public class StationReportPrinter {
 	 * @return the total trip count
 	 */
 	private int totalTrips(Station stationInput) {
-		int totalTrips = 0;
-		for (Trip t : trips) {
-			if (t.getStartStation() == stationInput.getStationID()) {
-				totalTrips++;
-			}
-			if (t.getEndStation() == stationInput.getStationID()) {
-				totalTrips++;
-			}
-			if (t.getEndStation() == stationInput.getStationID() && 
-					t.getStartStation() == stationInput.getStationID()) {
-				totalTrips--;
-			}
-		}
-		return totalTrips;
+		return flows.getTotalTrips(stationInput.getStationID());
 	}
-}
\ No newline at end of file
+}
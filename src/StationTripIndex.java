@@ -0,0 +1,81 @@
+/**
+ * This class indexes trips by station
+ * For every station ID it keeps the rows of the trips that
+ * departed from it and the rows of the trips that arrived at it,
+ * each as a compact int array in file order
+ * It is built in two passes over the trip table, after which
+ * a station-scoped query only has to touch that station's trips
+ *
+ */
+public class StationTripIndex {
+
+	private static final int[] NO_TRIPS = new int[0];
+
+	private StationDirectory directory;
+	private int[][] departures;
+	private int[][] arrivals;
+
+	/**
+	 * Builds the index for all trips in a table
+	 * @param trips are the trips to index
+	 * @param directory gives each station its slot
+	 */
+	public StationTripIndex(TripTable trips, StationDirectory directory) {
+		this.directory = directory;
+		int stations = directory.size();
+		int[] departureCounts = new int[stations];
+		int[] arrivalCounts = new int[stations];
+		for (int row = 0; row < trips.size(); row++) {
+			departureCounts[directory.slotOf(trips.getStartStation(row))]++;
+			arrivalCounts[directory.slotOf(trips.getEndStation(row))]++;
+		}
+		departures = new int[stations][];
+		arrivals = new int[stations][];
+		for (int slot = 0; slot < stations; slot++) {
+			departures[slot] = new int[departureCounts[slot]];
+			arrivals[slot] = new int[arrivalCounts[slot]];
+			departureCounts[slot] = 0;
+			arrivalCounts[slot] = 0;
+		}
+		for (int row = 0; row < trips.size(); row++) {
+			int start = directory.slotOf(trips.getStartStation(row));
+			departures[start][departureCounts[start]++] = row;
+			int end = directory.slotOf(trips.getEndStation(row));
+			arrivals[end][arrivalCounts[end]++] = row;
+		}
+	}
+
+	/**
+	 * The returned array belongs to the index and must not be changed
+	 * @param stationID is the station to look up
+	 * @return the rows of trips that started at the station, in file order
+	 */
+	public int[] getDepartures(int stationID) {
+		int slot = directory.slotOf(stationID);
+		return slot < 0 ? NO_TRIPS : departures[slot];
+	}
+
+	/**
+	 * The returned array belongs to the index and must not be changed
+	 * @param stationID is the station to look up
+	 * @return the rows of trips that ended at the station, in file order
+	 */
+	public int[] getArrivals(int stationID) {
+		int slot = directory.slotOf(stationID);
+		return slot < 0 ? NO_TRIPS : arrivals[slot];
+	}
+
+	/**
+	 * @return the number of trips that started at the station
+	 */
+	public int countDepartures(int stationID) {
+		return getDepartures(stationID).length;
+	}
+
+	/**
+	 * @return the number of trips that ended at the station
+	 */
+	public int countArrivals(int stationID) {
+		return getArrivals(stationID).length;
+	}
+}
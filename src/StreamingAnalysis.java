@@ -0,0 +1,130 @@
+import java.util.HashMap;
+
+/**
+ * This class holds analyses that can be run while a trip
+ * file streams past, without loading the trips into memory
+ * Each one is a TripConsumer that keeps only its own counts
+ * Register any number of them with TripReader.stream
+ * and read the answers once the pass is done
+ * They give the same answers as the DataAnalysis methods
+ * they are named after
+ *
+ */
+public class StreamingAnalysis {
+
+	/**
+	 * Counts trips of a route category that started in a given year
+	 * Streaming version of DataAnalysis.tripsByTripType
+	 */
+	public static class TripsByTripType implements TripConsumer {
+
+		private String quotedType;
+		private int year;
+		private int count;
+		private boolean[] matchingType;
+
+		/**
+		 * @param type is one-way or round-trip
+		 * @param year is the year to measure
+		 */
+		public TripsByTripType(String type, int year) {
+			this.quotedType = "\"" + type + "\"";
+			this.year = year;
+			this.matchingType = StringDictionary.shared().matchIgnoreCase(quotedType);
+		}
+
+		public void accept(TripRecord trip) {
+			if (trip.getStartYear() != year) {
+				return;
+			}
+			int code = trip.tripRouteCategoryCode;
+			if (code >= matchingType.length) {
+				// the category was first seen after the codes were matched
+				matchingType = StringDictionary.shared().matchIgnoreCase(quotedType);
+			}
+			if (matchingType[code]) {
+				count++;
+			}
+		}
+
+		/**
+		 * @return the number of trips
+		 */
+		public int getCount() {
+			return count;
+		}
+	}
+
+	/**
+	 * Counts trips per start day in one month
+	 * Streaming version of DataAnalysis.popularDayInMonth
+	 */
+	public static class PopularDayInMonth implements TripConsumer {
+
+		private int month;
+		private int[] daysInMonth = new int[31];
+
+		/**
+		 * @param month is the month to check
+		 */
+		public PopularDayInMonth(int month) {
+			this.month = month;
+		}
+
+		public void accept(TripRecord trip) {
+			if (trip.getStartMonth() == month) {
+				daysInMonth[trip.getStartDay() - 1]++;
+			}
+		}
+
+		/**
+		 * @return the date that was most popular
+		 */
+		public int getBusiestDay() {
+			int busyDay = 0;
+			for (int i = 1; i <= 30; i++) {
+				if (daysInMonth[busyDay] < daysInMonth[i]) {
+					busyDay = i;
+				}
+			}
+			return busyDay + 1;
+		}
+	}
+
+	/**
+	 * Counts the trips that ended at each station
+	 * Streaming version of DataAnalysis.stationMaintenanceCategories
+	 */
+	public static class StationMaintenanceCategories implements TripConsumer {
+
+		private HashMap<Integer, Integer> departures = new HashMap<Integer, Integer>();
+
+		public void accept(TripRecord trip) {
+			Integer count = departures.get(trip.getEndStation());
+			if (count == null) {
+				departures.put(trip.getEndStation(), 1);
+			} else {
+				departures.put(trip.getEndStation(), count + 1);
+			}
+		}
+
+		/**
+		 * @param departureThreshold the number of arrivals above
+		 * which a station needs maintenance
+		 * @return the list of station IDs that need maintenance
+		 */
+		public String getStations(int departureThreshold) {
+			String stationMaintenanceList = "";
+			for (HashMap.Entry<Integer, Integer> entry : departures.entrySet()) {
+				if (entry.getValue() > departureThreshold) {
+					stationMaintenanceList += entry.getKey() + " ";
+				}
+			}
+			if (stationMaintenanceList != "") {
+				return stationMaintenanceList;
+			} else {
+				return stationMaintenanceList += "No checks necessary this month";
+			}
+		}
+	}
+}
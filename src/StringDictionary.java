@@ -0,0 +1,113 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class turns repeated Strings into small integer codes
+ * Fields like the route category, passholder type, station name
+ * and station status only take a few distinct values, so trips and
+ * stations store the code and queries compare integers
+ * A query resolves its String to a code, or to a set of codes,
+ * once before the scan starts
+ *
+ * One shared dictionary is used for all trip and station data,
+ * so codes mean the same thing across tables
+ * Codes are never removed, and the dictionary is safe to use
+ * from several threads
+ *
+ */
+public class StringDictionary {
+
+	private static final StringDictionary SHARED = new StringDictionary();
+
+	private ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<String, Integer>();
+	private volatile String[] values = new String[16];
+	private volatile int size;
+
+	/**
+	 * @return the dictionary shared by all trip and station data
+	 */
+	public static StringDictionary shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Finds the code of a value, adding the value if it is new
+	 * @param value is the String to encode
+	 * @return the code of the value
+	 */
+	public int encode(String value) {
+		Integer code = codes.get(value);
+		if (code != null) {
+			return code;
+		}
+		synchronized (this) {
+			code = codes.get(value);
+			if (code != null) {
+				return code;
+			}
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size] = value;
+			size++;
+			codes.put(value, size - 1);
+			return size - 1;
+		}
+	}
+
+	/**
+	 * Finds the code of a value without adding it
+	 * @param value is the String to look up
+	 * @return the code, or -1 if the value has never been seen
+	 */
+	public int lookup(String value) {
+		Integer code = codes.get(value);
+		if (code == null) {
+			return -1;
+		}
+		return code;
+	}
+
+	/**
+	 * @param code is a code handed out by this dictionary
+	 * @return the String for that code
+	 */
+	public String decode(int code) {
+		return values[code];
+	}
+
+	/**
+	 * @return the number of distinct values
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Marks every code whose value equals the input, ignoring case
+	 * @param value is the String to compare against
+	 * @return an array indexed by code that is true for matches
+	 */
+	public boolean[] matchIgnoreCase(String value) {
+		boolean[] matches = new boolean[size];
+		String[] known = values;
+		for (int code = 0; code < matches.length; code++) {
+			matches[code] = known[code].equalsIgnoreCase(value);
+		}
+		return matches;
+	}
+
+	/**
+	 * Marks every code whose value contains the input
+	 * @param part is the text to look for
+	 * @return an array indexed by code that is true for matches
+	 */
+	public boolean[] matchContaining(String part) {
+		boolean[] matches = new boolean[size];
+		String[] known = values;
+		for (int code = 0; code < matches.length; code++) {
+			matches[code] = known[code].contains(part);
+		}
+		return matches;
+	}
+}
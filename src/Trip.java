@@ -24,18 +24,8 @@ public class Trip {
 	private String tripRouteCategory;
 	private String passholderType;
 	
-	private int startYear;
-	private int startMonth;
-	private int startDay;
-	private int startHour;
-	private int startMinute;
-	private int startSecond;
-	private int endYear;
-	private int endMonth;
-	private int endDay;
-	private int endHour;
-	private int endMinute;
-	private int endSecond;
+	private long startEpochSecond;
+	private long endEpochSecond;
 	
 	
 	/**
@@ -57,8 +47,8 @@ public class Trip {
 	 * @param tripRouteCategory indicates whether the trip was one-way or RT
 	 * @param passholderType is the type of account the rider had
 	 * 
-	 * We also call on two methods to provide more robust date and time
-	 * information to those who call on trip objects
+	 * The start and end times are decoded once into epoch seconds,
+	 * and the date and time fields are worked out from those
 	 */
 	public Trip(int tripID, int duration, String startTime, String endTime, int startStation, double startLat,
 			double startLong, int endStation, double endLat, double endLong, int bikeID, int planDuration,
@@ -77,121 +67,32 @@ public class Trip {
 		this.planDuration = planDuration;
 		this.tripRouteCategory = tripRouteCategory;
 		this.passholderType = passholderType;
-		partitionStartDateTime();
-		partitionEndDateTime();
+		this.startEpochSecond = EpochTime.parse(startTime);
+		this.endEpochSecond = EpochTime.parse(endTime);
 	}
 
 	/**
-	 * This method partitions the start time data
-	 * It first splits the date and time
-	 * then calls on other methods to store components
-	 * of the date and the time
-	 */
-	private void partitionStartDateTime() {
-		String[] partitionST = startTime.split(" ");
-		String startCompleteDate = partitionST[0];
-		String startCompleteTime = partitionST[1];
-		startYear = getYear(startCompleteDate);
-		startMonth = getMonth(startCompleteDate);
-		startDay = getDate(startCompleteDate);
-		startHour = getHour(startCompleteTime);
-		startMinute = getMinute(startCompleteTime);
-		startSecond = getSecond(startCompleteTime);
-	}
-
-	/**
-	 * This method partitions the end time data
-	 * It first splits the date and time
-	 * then calls on other methods to store components
-	 * of the date and the time
-	 */
-	private void partitionEndDateTime() {
-		String[] partitionET = endTime.split(" ");
-		String endCompleteDate = partitionET[0];
-		String endCompleteTime = partitionET[1];
-		endYear = getYear(endCompleteDate);
-		endMonth = getMonth(endCompleteDate);
-		endDay = getDate(endCompleteDate);
-		endHour = getHour(endCompleteTime);
-		endMinute = getMinute(endCompleteTime);
-		endSecond = getSecond(endCompleteTime);
-	}
-
-	/**
-	 * This method takes in date data and
-	 * outputs the year
-	 * @param completeDate is the full start or end date
-	 * @return only the year
-	 */
-	private int getYear(String completeDate) {
-		// TODO Auto-generated method stub
-		String[] partitionedDate = completeDate.split("-");
-		String partitionedDateInt = partitionedDate[0].substring(1, 5);
-		int year = Integer.parseInt(partitionedDateInt);
-		return year;
-	}
-	
-	/**
-	 * This method takes in date data and
-	 * outputs the month
-	 * @param completeDate is the full start or end date
-	 * @return only the month
-	 */
-	private int getMonth(String completeDate) {
-		// TODO Auto-generated method stub
-		String[] partitionedDate = completeDate.split("-");
-		int month = Integer.parseInt(partitionedDate[1]);
-		return month;
-	}
-	
-	/**
-	 * This method takes in date data and
-	 * outputs the date
-	 * @param completeDate is the full start or end date
-	 * @return only the date
-	 */
-	private int getDate(String completeDate) {
-		// TODO Auto-generated method stub
-		String[] partitionedDate = completeDate.split("-");
-		int date = Integer.parseInt(partitionedDate[2]);
-		return date;
-	}
-	
-	/**
-	 * This method takes in time data and
-	 * outputs the hour
-	 * @param completeDate is the full start or end time
-	 * @return only the hour
-	 */
-	private int getHour(String completeTime) {
-		String[] partitionedTime = completeTime.split(":");
-		int hour = Integer.parseInt(partitionedTime[0]);
-		return hour;
-	}
-	
-	/**
-	 * This method takes in time data and
-	 * outputs the minute
-	 * @param completeDate is the full start or end time
-	 * @return only the minute
-	 */
-	private int getMinute(String completeTime) {
-		String[] partitionedTime = completeTime.split(":");
-		int minute = Integer.parseInt(partitionedTime[1]);
-		return minute;
-	}
-	
-	/**
-	 * This method takes in time data and
-	 * outputs the second
-	 * @param completeDate is the full start or end time
-	 * @return only the second
-	 */
-	private int getSecond(String completeTime) {
-		String[] partitionedTime = completeTime.split(":");
-		String partitionedTimeInt = partitionedTime[2].substring(0, 1);
-		int second = Integer.parseInt(partitionedTimeInt);
-		return second;
+	 * Trips read by the byte-level parser are built from
+	 * a decoded record instead of Strings
+	 * The start and end time Strings are only put together
+	 * if a caller asks for them
+	 * @param record is the decoded row from the trip file
+	 */
+	Trip(TripRecord record) {
+		this.tripID = record.tripID;
+		this.duration = record.duration;
+		this.startStation = record.startStation;
+		this.startLat = record.startLat;
+		this.startLong = record.startLong;
+		this.endStation = record.endStation;
+		this.endLat = record.endLat;
+		this.endLong = record.endLong;
+		this.bikeID = record.bikeID;
+		this.planDuration = record.planDuration;
+		this.tripRouteCategory = record.tripRouteCategory;
+		this.passholderType = record.passholderType;
+		this.startEpochSecond = record.startTime;
+		this.endEpochSecond = record.endTime;
 	}
 
 	/**
@@ -211,6 +112,9 @@ public class Trip {
 	 * @return the startTime
 	 */
 	public String getStartTime() {
+		if (startTime == null) {
+			startTime = formatDateTime(startEpochSecond);
+		}
 		return startTime;
 	}
 
@@ -218,9 +122,24 @@ public class Trip {
 	 * @return the endTime
 	 */
 	public String getEndTime() {
+		if (endTime == null) {
+			endTime = formatDateTime(endEpochSecond);
+		}
 		return endTime;
 	}
 
+	/**
+	 * Puts a date and time back into the quoted layout
+	 * used by the Indego trip file
+	 * @return the date and time as it appeared in the file
+	 */
+	private static String formatDateTime(long epochSecond) {
+		return String.format("\"%04d-%02d-%02d %02d:%02d:%02d\"",
+				EpochTime.year(epochSecond), EpochTime.month(epochSecond),
+				EpochTime.day(epochSecond), EpochTime.hour(epochSecond),
+				EpochTime.minute(epochSecond), EpochTime.second(epochSecond));
+	}
+
 	/**
 	 * @return the startStation
 	 */
@@ -291,88 +210,102 @@ public class Trip {
 		return passholderType;
 	}
 
+	/**
+	 * @return the start time in seconds since 1970-01-01 00:00:00
+	 */
+	public long getStartEpochSecond() {
+		return startEpochSecond;
+	}
+
+	/**
+	 * @return the end time in seconds since 1970-01-01 00:00:00
+	 */
+	public long getEndEpochSecond() {
+		return endEpochSecond;
+	}
+
 	/**
 	 * @return the startYear
 	 */
 	public int getStartYear() {
-		return startYear;
+		return EpochTime.year(startEpochSecond);
 	}
 
 	/**
 	 * @return the startMonth
 	 */
 	public int getStartMonth() {
-		return startMonth;
+		return EpochTime.month(startEpochSecond);
 	}
 
 	/**
 	 * @return the startDay
 	 */
 	public int getStartDay() {
-		return startDay;
+		return EpochTime.day(startEpochSecond);
 	}
 
 	/**
 	 * @return the startHour
 	 */
 	public int getStartHour() {
-		return startHour;
+		return EpochTime.hour(startEpochSecond);
 	}
 
 	/**
 	 * @return the startMinute
 	 */
 	public int getStartMinute() {
-		return startMinute;
+		return EpochTime.minute(startEpochSecond);
 	}
 
 	/**
 	 * @return the startSecond
 	 */
 	public int getStartSecond() {
-		return startSecond;
+		return EpochTime.second(startEpochSecond);
 	}
 
 	/**
 	 * @return the endYear
 	 */
 	public int getEndYear() {
-		return endYear;
+		return EpochTime.year(endEpochSecond);
 	}
 
 	/**
 	 * @return the endMonth
 	 */
 	public int getEndMonth() {
-		return endMonth;
+		return EpochTime.month(endEpochSecond);
 	}
 
 	/**
 	 * @return the endDay
 	 */
 	public int getEndDay() {
-		return endDay;
+		return EpochTime.day(endEpochSecond);
 	}
 
 	/**
 	 * @return the endHour
 	 */
 	public int getEndHour() {
-		return endHour;
+		return EpochTime.hour(endEpochSecond);
 	}
 
 	/**
 	 * @return the endMinute
 	 */
 	public int getEndMinute() {
-		return endMinute;
+		return EpochTime.minute(endEpochSecond);
 	}
 
 	/**
 	 * @return the endSecond
 	 */
 	public int getEndSecond() {
-		return endSecond;
+		return EpochTime.second(endEpochSecond);
 	}
 	
 	/**
@@ -383,7 +316,7 @@ public class Trip {
 	 */
 	public String getAllTripData() {
 		String allTripData = Integer.toString(tripID) + "," +
-		Integer.toString(duration) + "," + startTime + "," + endTime +
+		Integer.toString(duration) + "," + getStartTime() + "," + getEndTime() +
 		 "," + startStation + "," + startLat + startLong + "," + endStation +
 		 "," + endLat + "," + endLong + "," + bikeID + "," + planDuration + 
 		 "," + tripRouteCategory + "," + passholderType;
@@ -0,0 +1,180 @@
+import java.util.HashMap;
+
+/**
+ * This class keeps a RowBitmap of trip table rows for every value
+ * of the categorical trip fields: passholder type, route category,
+ * start and end station, start month, start hour and plan duration
+ * A question such as one-way Indego30 trips from a station in
+ * August before 7am becomes a few bitmap ANDs and ORs, followed by
+ * a cardinality or a walk over the matching rows
+ * The bitmaps are built in one pass over the trips
+ *
+ */
+public class TripBitmapIndex {
+
+	private int rows;
+	private HashMap<Integer, RowBitmap> passholderTypes;
+	private HashMap<Integer, RowBitmap> routeCategories;
+	private HashMap<Integer, RowBitmap> startStations;
+	private HashMap<Integer, RowBitmap> endStations;
+	private HashMap<Integer, RowBitmap> startMonths;
+	private HashMap<Integer, RowBitmap> startHours;
+	private HashMap<Integer, RowBitmap> planDurations;
+
+	/**
+	 * Builds the bitmaps for all trips in a table
+	 * @param trips are the trips to index
+	 */
+	public TripBitmapIndex(TripTable trips) {
+		rows = trips.size();
+		HashMap<Integer, RowBitmap.Builder> passholder = new HashMap<>();
+		HashMap<Integer, RowBitmap.Builder> route = new HashMap<>();
+		HashMap<Integer, RowBitmap.Builder> start = new HashMap<>();
+		HashMap<Integer, RowBitmap.Builder> end = new HashMap<>();
+		HashMap<Integer, RowBitmap.Builder> month = new HashMap<>();
+		HashMap<Integer, RowBitmap.Builder> hour = new HashMap<>();
+		HashMap<Integer, RowBitmap.Builder> plan = new HashMap<>();
+		for (int row = 0; row < rows; row++) {
+			add(passholder, trips.getPassholderTypeCode(row), row);
+			add(route, trips.getTripRouteCategoryCode(row), row);
+			add(start, trips.getStartStation(row), row);
+			add(end, trips.getEndStation(row), row);
+			add(month, trips.getStartMonth(row), row);
+			add(hour, trips.getStartHour(row), row);
+			add(plan, trips.getPlanDuration(row), row);
+		}
+		passholderTypes = build(passholder);
+		routeCategories = build(route);
+		startStations = build(start);
+		endStations = build(end);
+		startMonths = build(month);
+		startHours = build(hour);
+		planDurations = build(plan);
+	}
+
+	private static void add(HashMap<Integer, RowBitmap.Builder> builders, int value, int row) {
+		RowBitmap.Builder builder = builders.get(value);
+		if (builder == null) {
+			builder = new RowBitmap.Builder();
+			builders.put(value, builder);
+		}
+		builder.add(row);
+	}
+
+	private static HashMap<Integer, RowBitmap> build(HashMap<Integer, RowBitmap.Builder> builders) {
+		HashMap<Integer, RowBitmap> bitmaps = new HashMap<>();
+		for (HashMap.Entry<Integer, RowBitmap.Builder> entry : builders.entrySet()) {
+			bitmaps.put(entry.getKey(), entry.getValue().build());
+		}
+		return bitmaps;
+	}
+
+	private static RowBitmap get(HashMap<Integer, RowBitmap> bitmaps, int value) {
+		RowBitmap bitmap = bitmaps.get(value);
+		return bitmap == null ? RowBitmap.empty() : bitmap;
+	}
+
+	/**
+	 * ORs together the bitmaps of every dictionary code in a mask
+	 */
+	private static RowBitmap matching(HashMap<Integer, RowBitmap> bitmaps, boolean[] codes) {
+		RowBitmap result = RowBitmap.empty();
+		for (HashMap.Entry<Integer, RowBitmap> entry : bitmaps.entrySet()) {
+			int code = entry.getKey();
+			if (code >= 0 && code < codes.length && codes[code]) {
+				result = result.or(entry.getValue());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Category values are kept with the quotes from the trip file,
+	 * so the name is matched with and without them
+	 */
+	private static boolean[] codesNamed(String name) {
+		boolean[] codes = StringDictionary.shared().matchIgnoreCase(name);
+		boolean[] quoted = StringDictionary.shared().matchIgnoreCase("\"" + name + "\"");
+		for (int code = 0; code < Math.min(codes.length, quoted.length); code++) {
+			codes[code] |= quoted[code];
+		}
+		return codes;
+	}
+
+	/**
+	 * @return every row in the table
+	 */
+	public RowBitmap all() {
+		return RowBitmap.range(rows);
+	}
+
+	/**
+	 * The match ignores case and the quotes from the trip file,
+	 * so "indego30" finds "Indego30"
+	 * @param passholderType is the name of the pass
+	 * @return the trips made on that type of pass
+	 */
+	public RowBitmap passholderType(String passholderType) {
+		return matching(passholderTypes, codesNamed(passholderType));
+	}
+
+	/**
+	 * The match ignores case and the quotes from the trip file,
+	 * so "one way" finds "One Way"
+	 * @param routeCategory is the name of the category
+	 * @return the trips in that route category
+	 */
+	public RowBitmap routeCategory(String routeCategory) {
+		return matching(routeCategories, codesNamed(routeCategory));
+	}
+
+	/**
+	 * @return the trips that started at a station
+	 */
+	public RowBitmap startStation(int stationID) {
+		return get(startStations, stationID);
+	}
+
+	/**
+	 * @return the trips that ended at a station
+	 */
+	public RowBitmap endStation(int stationID) {
+		return get(endStations, stationID);
+	}
+
+	/**
+	 * @param month is the month, 1 to 12
+	 * @return the trips that started in that month
+	 */
+	public RowBitmap startMonth(int month) {
+		return get(startMonths, month);
+	}
+
+	/**
+	 * @param hour is the hour, 0 to 23
+	 * @return the trips that started in that hour
+	 */
+	public RowBitmap startHour(int hour) {
+		return get(startHours, hour);
+	}
+
+	/**
+	 * @param fromHour is the first hour to include
+	 * @param toHour is the first hour to leave out
+	 * @return the trips that started from fromHour up to toHour
+	 */
+	public RowBitmap startHourBetween(int fromHour, int toHour) {
+		RowBitmap result = RowBitmap.empty();
+		for (int hour = Math.max(0, fromHour); hour < Math.min(24, toHour); hour++) {
+			result = result.or(startHour(hour));
+		}
+		return result;
+	}
+
+	/**
+	 * @return the trips with that planned duration
+	 */
+	public RowBitmap planDuration(int planDuration) {
+		return get(planDurations, planDuration);
+	}
+}
@@ -0,0 +1,14 @@
+/**
+ * Receives trips one at a time as a trip file is parsed
+ * The record passed in is reused for the next row,
+ * so implementations must copy anything they want to keep
+ *
+ */
+public interface TripConsumer {
+
+	/**
+	 * Called once for every row in the trip file
+	 * @param trip is the decoded row
+	 */
+	void accept(TripRecord trip);
+}
@@ -1,13 +1,115 @@
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Scanner;
 
+/**
+ * Reads an Indego trip file into a column-oriented TripTable
+ * By default a binary snapshot of the file is loaded if one is
+ * up to date; otherwise the file is memory-mapped, parsed on all
+ * cores, and a new snapshot is saved for the next run
+ * The other readers are kept for comparison
+ *
+ */
 public class TripReader {
 
+	/**
+	 * The ways a trip file can be read
+	 */
+	public enum Mode {
+		SCANNER, MAPPED, PARALLEL, SNAPSHOT
+	}
+
+	private TripTable tripTable;
 	private ArrayList<Trip> eachTrip;
 	
+	/**
+	 * Reads the trip file through its snapshot
+	 * @param inputFileName is the file path for the trip file
+	 */
 	public TripReader(String inputFileName) throws FileNotFoundException {
+		this(inputFileName, Mode.SNAPSHOT);
+	}
+	
+	/**
+	 * @param inputFileName is the file path for the trip file
+	 * @param mode is the reader to use
+	 */
+	public TripReader(String inputFileName, Mode mode) throws FileNotFoundException {
+		if (mode == Mode.SNAPSHOT) {
+			readWithSnapshot(inputFileName);
+		} else if (mode == Mode.PARALLEL) {
+			tripTable = new ParallelTripLoader().load(inputFileName);
+		} else if (mode == Mode.MAPPED) {
+			tripTable = new MappedTripParser(inputFileName).readTable();
+		} else {
+			readWithScanner(inputFileName);
+			tripTable = TripTable.fromTrips(eachTrip);
+		}
+	}
+	
+	/**
+	 * Loads the snapshot of the trip file if it is up to date
+	 * Otherwise parses the file and saves a fresh snapshot
+	 * A snapshot that cannot be read or written is skipped
+	 * @param inputFileName is the file path for the trip file
+	 */
+	private void readWithSnapshot(String inputFileName) throws FileNotFoundException {
+		if (!new File(inputFileName).isFile()) {
+			throw new FileNotFoundException(inputFileName);
+		}
+		try {
+			tripTable = DataSnapshot.readTrips(inputFileName);
+		} catch (IOException ioe) {
+			tripTable = null;
+		}
+		if (tripTable == null) {
+			// the file's state is taken before parsing, so a change made
+			// while it is parsed leaves the new snapshot stale
+			DataSnapshot.Source source;
+			try {
+				source = DataSnapshot.source(inputFileName);
+			} catch (IOException ioe) {
+				source = null;
+			}
+			tripTable = new ParallelTripLoader().load(inputFileName);
+			if (source != null) {
+				try {
+					DataSnapshot.writeTrips(inputFileName, source, tripTable);
+				} catch (IOException ioe) {
+					System.out.println("Could not save a snapshot of "
+							+ inputFileName + ": " + ioe.getMessage());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Reads a trip file in one pass without keeping any trips
+	 * Every row is handed to each consumer in turn, in file order,
+	 * using one reused record, so memory use does not grow with
+	 * the size of the file
+	 * @param inputFileName is the file path for the trip file
+	 * @param consumers receive every row
+	 */
+	public static void stream(String inputFileName, final TripConsumer... consumers)
+			throws FileNotFoundException {
+		MappedTripParser parser = new MappedTripParser(inputFileName);
+		parser.parse(parser.getDataStart(), parser.getFileSize(), new TripConsumer() {
+			public void accept(TripRecord trip) {
+				for (TripConsumer consumer : consumers) {
+					consumer.accept(trip);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Reads each line with a Scanner and splits it on commas
+	 * @param inputFileName is the file path for the trip file
+	 */
+	private void readWithScanner(String inputFileName) throws FileNotFoundException {
 		eachTrip = new ArrayList<Trip>();
 //		try {
 			File inputFile=new File(inputFileName);
@@ -96,7 +198,21 @@ public class TripReader {
 	}
 	
 	
+	/**
+	 * Trip objects are only built the first time they are asked for
+	 * @return an array of all trips in file order
+	 */
 	public ArrayList<Trip> getEachTrip() {
+		if (eachTrip == null) {
+			eachTrip = tripTable.toTrips();
+		}
 		return eachTrip;
 	}
+	
+	/**
+	 * @return the trips as columns
+	 */
+	public TripTable getTripTable() {
+		return tripTable;
+	}
 }
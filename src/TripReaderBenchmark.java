@@ -0,0 +1,33 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+
+/**
+ * Compares how fast each TripReader mode
+ * gets through the same trip file
+ * Usage: java TripReaderBenchmark tripFile [rounds]
+ *
+ */
+public class TripReaderBenchmark {
+
+	public static void main(String[] args) throws FileNotFoundException {
+		String fileNameTrips = args.length > 0 ? args[0] : "indego-trips-2017-q3.csv";
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		double megabytes = new File(fileNameTrips).length() / (1024.0 * 1024.0);
+		System.out.println("Cores available: " + Runtime.getRuntime().availableProcessors());
+		
+		for (int round = 1; round <= rounds; round++) {
+			double scannerSeconds = 0.0;
+			for (TripReader.Mode mode : TripReader.Mode.values()) {
+				long start = System.nanoTime();
+				int trips = new TripReader(fileNameTrips, mode).getTripTable().size();
+				double seconds = (System.nanoTime() - start) / 1e9;
+				if (mode == TripReader.Mode.SCANNER) {
+					scannerSeconds = seconds;
+				}
+				System.out.println(String.format("Round %d %-8s %.3fs (%.0f trips/s, %.1f MB/s, %.1fx)",
+						round, mode, seconds, trips / seconds, megabytes / seconds,
+						scannerSeconds / seconds));
+			}
+		}
+	}
+}
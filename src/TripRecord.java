@@ -0,0 +1,222 @@
+/**
+ * This class is a reusable holder for one row of the Indego trip file
+ * The byte-level parser fills the same record for every line
+ * so that no objects are created per field while decoding
+ * Callers that need to keep a row should copy it into a Trip
+ *
+ */
+public class TripRecord {
+
+	int tripID;
+	int duration;
+	long startTime;
+	long endTime;
+	int startStation;
+	double startLat;
+	double startLong;
+	int endStation;
+	double endLat;
+	double endLong;
+	int bikeID;
+	int planDuration;
+	String tripRouteCategory;
+	String passholderType;
+	int tripRouteCategoryCode;
+	int passholderTypeCode;
+	
+	/**
+	 * @return the tripID
+	 */
+	public int getTripID() {
+		return tripID;
+	}
+
+	/**
+	 * @return the duration
+	 */
+	public int getDuration() {
+		return duration;
+	}
+
+	/**
+	 * @return the startStation
+	 */
+	public int getStartStation() {
+		return startStation;
+	}
+
+	/**
+	 * @return the startLat
+	 */
+	public double getStartLat() {
+		return startLat;
+	}
+
+	/**
+	 * @return the startLong
+	 */
+	public double getStartLong() {
+		return startLong;
+	}
+
+	/**
+	 * @return the endStation
+	 */
+	public int getEndStation() {
+		return endStation;
+	}
+
+	/**
+	 * @return the endLat
+	 */
+	public double getEndLat() {
+		return endLat;
+	}
+
+	/**
+	 * @return the endLong
+	 */
+	public double getEndLong() {
+		return endLong;
+	}
+
+	/**
+	 * @return the bikeID
+	 */
+	public int getBikeID() {
+		return bikeID;
+	}
+
+	/**
+	 * @return the planDuration
+	 */
+	public int getPlanDuration() {
+		return planDuration;
+	}
+
+	/**
+	 * @return the tripRouteCategory
+	 */
+	public String getTripRouteCategory() {
+		return tripRouteCategory;
+	}
+
+	/**
+	 * @return the passholderType
+	 */
+	public String getPassholderType() {
+		return passholderType;
+	}
+
+	/**
+	 * @return the code of the tripRouteCategory in the shared dictionary
+	 */
+	public int getTripRouteCategoryCode() {
+		return tripRouteCategoryCode;
+	}
+
+	/**
+	 * @return the code of the passholderType in the shared dictionary
+	 */
+	public int getPassholderTypeCode() {
+		return passholderTypeCode;
+	}
+
+	/**
+	 * @return the start time in epoch seconds
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * @return the end time in epoch seconds
+	 */
+	public long getEndTime() {
+		return endTime;
+	}
+
+	/**
+	 * @return the startYear
+	 */
+	public int getStartYear() {
+		return EpochTime.year(startTime);
+	}
+
+	/**
+	 * @return the startMonth
+	 */
+	public int getStartMonth() {
+		return EpochTime.month(startTime);
+	}
+
+	/**
+	 * @return the startDay
+	 */
+	public int getStartDay() {
+		return EpochTime.day(startTime);
+	}
+
+	/**
+	 * @return the startHour
+	 */
+	public int getStartHour() {
+		return EpochTime.hour(startTime);
+	}
+
+	/**
+	 * @return the startMinute
+	 */
+	public int getStartMinute() {
+		return EpochTime.minute(startTime);
+	}
+
+	/**
+	 * @return the startSecond
+	 */
+	public int getStartSecond() {
+		return EpochTime.second(startTime);
+	}
+
+	/**
+	 * @return the endYear
+	 */
+	public int getEndYear() {
+		return EpochTime.year(endTime);
+	}
+
+	/**
+	 * @return the endMonth
+	 */
+	public int getEndMonth() {
+		return EpochTime.month(endTime);
+	}
+
+	/**
+	 * @return the endDay
+	 */
+	public int getEndDay() {
+		return EpochTime.day(endTime);
+	}
+
+	/**
+	 * @return the endHour
+	 */
+	public int getEndHour() {
+		return EpochTime.hour(endTime);
+	}
+
+	/**
+	 * @return the endMinute
+	 */
+	public int getEndMinute() {
+		return EpochTime.minute(endTime);
+	}
+
+	/**
+	 * @return the endSecond
+	 */
+	public int getEndSecond() {
+		return EpochTime.second(endTime);
+	}
+}
@@ -0,0 +1,629 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class stores trips column by column instead of as objects
+ * Every field lives in its own int, long or double array,
+ * indexed by row number in file order
+ * Queries walk the few columns they need from start to end,
+ * which is much kinder to the cache than chasing Trip pointers
+ * Start and end times are kept as epoch seconds, and the calendar
+ * fields are worked out from them when asked for
+ * The route category and passholder type are stored as codes
+ * from the shared StringDictionary
+ * Each trip's Haversine distance in kilometres is worked out once
+ * as the row is added and kept in its own column, NaN when the
+ * trip is missing coordinates
+ * A table cannot be changed once it is handed out, since analyses
+ * share it and build indexes from it; rows are added through a
+ * TripTable.Builder, or copied in by the loaders in this package
+ *
+ */
+public class TripTable {
+
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	private int size;
+	private int[] tripID;
+	private int[] duration;
+	private long[] startTime;
+	private long[] endTime;
+	private int[] startStation;
+	private double[] startLat;
+	private double[] startLong;
+	private int[] endStation;
+	private double[] endLat;
+	private double[] endLong;
+	private double[] distance;
+	private int[] bikeID;
+	private int[] planDuration;
+	private int[] tripRouteCategory;
+	private int[] passholderType;
+	private StringDictionary dictionary = StringDictionary.shared();
+
+	/**
+	 * Creates an empty table
+	 */
+	TripTable() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty table with room for a number of trips
+	 * @param capacity is the number of rows to allocate up front
+	 */
+	TripTable(int capacity) {
+		allocate(Math.max(capacity, 1));
+	}
+
+	/**
+	 * Copies a list of trip objects into a table
+	 * @param trips are the trips in file order
+	 * @return the table
+	 */
+	public static TripTable fromTrips(ArrayList<Trip> trips) {
+		Builder table = new Builder(trips.size());
+		for (Trip t : trips) {
+			table.add(t);
+		}
+		return table.build();
+	}
+
+	/**
+	 * Joins tables end to end, keeping their order
+	 * @param parts are the tables to join
+	 * @return one table holding every row
+	 */
+	public static TripTable concat(ArrayList<TripTable> parts) {
+		int total = 0;
+		for (TripTable part : parts) {
+			total += part.size;
+		}
+		TripTable table = new TripTable(total);
+		for (TripTable part : parts) {
+			int at = table.size;
+			int n = part.size;
+			System.arraycopy(part.tripID, 0, table.tripID, at, n);
+			System.arraycopy(part.duration, 0, table.duration, at, n);
+			System.arraycopy(part.startTime, 0, table.startTime, at, n);
+			System.arraycopy(part.endTime, 0, table.endTime, at, n);
+			System.arraycopy(part.startStation, 0, table.startStation, at, n);
+			System.arraycopy(part.startLat, 0, table.startLat, at, n);
+			System.arraycopy(part.startLong, 0, table.startLong, at, n);
+			System.arraycopy(part.endStation, 0, table.endStation, at, n);
+			System.arraycopy(part.endLat, 0, table.endLat, at, n);
+			System.arraycopy(part.endLong, 0, table.endLong, at, n);
+			System.arraycopy(part.distance, 0, table.distance, at, n);
+			System.arraycopy(part.bikeID, 0, table.bikeID, at, n);
+			System.arraycopy(part.planDuration, 0, table.planDuration, at, n);
+			System.arraycopy(part.tripRouteCategory, 0, table.tripRouteCategory, at, n);
+			System.arraycopy(part.passholderType, 0, table.passholderType, at, n);
+			table.size += n;
+		}
+		return table;
+	}
+
+	/**
+	 * Copies chosen rows into a new table in the order given,
+	 * for example to lay the trips out by start time
+	 * @param rows are the rows to copy
+	 * @return the new table
+	 */
+	public TripTable select(int[] rows) {
+		TripTable table = new TripTable(rows.length);
+		for (int i = 0; i < rows.length; i++) {
+			int row = rows[i];
+			if (row < 0 || row >= size) {
+				throw new IndexOutOfBoundsException("row " + row + " of " + size);
+			}
+			table.tripID[i] = tripID[row];
+			table.duration[i] = duration[row];
+			table.startTime[i] = startTime[row];
+			table.endTime[i] = endTime[row];
+			table.startStation[i] = startStation[row];
+			table.startLat[i] = startLat[row];
+			table.startLong[i] = startLong[row];
+			table.endStation[i] = endStation[row];
+			table.endLat[i] = endLat[row];
+			table.endLong[i] = endLong[row];
+			table.distance[i] = distance[row];
+			table.bikeID[i] = bikeID[row];
+			table.planDuration[i] = planDuration[row];
+			table.tripRouteCategory[i] = tripRouteCategory[row];
+			table.passholderType[i] = passholderType[row];
+		}
+		table.size = rows.length;
+		return table;
+	}
+
+	/**
+	 * Appends a row decoded by the trip file parser
+	 * @param trip is the decoded row
+	 */
+	void append(TripRecord trip) {
+		int row = nextRow();
+		tripID[row] = trip.tripID;
+		duration[row] = trip.duration;
+		startTime[row] = trip.startTime;
+		endTime[row] = trip.endTime;
+		startStation[row] = trip.startStation;
+		startLat[row] = trip.startLat;
+		startLong[row] = trip.startLong;
+		endStation[row] = trip.endStation;
+		endLat[row] = trip.endLat;
+		endLong[row] = trip.endLong;
+		distance[row] = distanceOf(row);
+		bikeID[row] = trip.bikeID;
+		planDuration[row] = trip.planDuration;
+		tripRouteCategory[row] = trip.tripRouteCategoryCode;
+		passholderType[row] = trip.passholderTypeCode;
+	}
+
+	/**
+	 * Appends a trip object
+	 * @param t is the trip to add
+	 */
+	void append(Trip t) {
+		int row = nextRow();
+		tripID[row] = t.getTripID();
+		duration[row] = t.getDuration();
+		startTime[row] = t.getStartEpochSecond();
+		endTime[row] = t.getEndEpochSecond();
+		startStation[row] = t.getStartStation();
+		startLat[row] = t.getStartLat();
+		startLong[row] = t.getStartLong();
+		endStation[row] = t.getEndStation();
+		endLat[row] = t.getEndLat();
+		endLong[row] = t.getEndLong();
+		distance[row] = distanceOf(row);
+		bikeID[row] = t.getBikeID();
+		planDuration[row] = t.getPlanDuration();
+		tripRouteCategory[row] = dictionary.encode(t.getTripRouteCategory());
+		passholderType[row] = dictionary.encode(t.getPassholderType());
+	}
+
+	/**
+	 * Builds a trip object for one row
+	 * @param row is the row number
+	 * @return the trip
+	 */
+	public Trip getTrip(int row) {
+		TripRecord record = new TripRecord();
+		record.tripID = tripID[row];
+		record.duration = duration[row];
+		record.startTime = startTime[row];
+		record.endTime = endTime[row];
+		record.startStation = startStation[row];
+		record.startLat = startLat[row];
+		record.startLong = startLong[row];
+		record.endStation = endStation[row];
+		record.endLat = endLat[row];
+		record.endLong = endLong[row];
+		record.bikeID = bikeID[row];
+		record.planDuration = planDuration[row];
+		record.tripRouteCategoryCode = tripRouteCategory[row];
+		record.tripRouteCategory = dictionary.decode(tripRouteCategory[row]);
+		record.passholderTypeCode = passholderType[row];
+		record.passholderType = dictionary.decode(passholderType[row]);
+		return new Trip(record);
+	}
+
+	/**
+	 * Builds trip objects for every row
+	 * @return the trips in file order
+	 */
+	public ArrayList<Trip> toTrips() {
+		ArrayList<Trip> trips = new ArrayList<Trip>(size);
+		for (int row = 0; row < size; row++) {
+			trips.add(getTrip(row));
+		}
+		return trips;
+	}
+
+	/**
+	 * @return the number of trips
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the tripID of a row
+	 */
+	public int getTripID(int row) {
+		return tripID[row];
+	}
+
+	/**
+	 * @return the duration of a row
+	 */
+	public int getDuration(int row) {
+		return duration[row];
+	}
+
+	/**
+	 * @return the start time of a row in epoch seconds
+	 */
+	public long getStartTime(int row) {
+		return startTime[row];
+	}
+
+	/**
+	 * @return the end time of a row in epoch seconds
+	 */
+	public long getEndTime(int row) {
+		return endTime[row];
+	}
+
+	/**
+	 * @return the startStation of a row
+	 */
+	public int getStartStation(int row) {
+		return startStation[row];
+	}
+
+	/**
+	 * @return the startLat of a row
+	 */
+	public double getStartLat(int row) {
+		return startLat[row];
+	}
+
+	/**
+	 * @return the startLong of a row
+	 */
+	public double getStartLong(int row) {
+		return startLong[row];
+	}
+
+	/**
+	 * @return the endStation of a row
+	 */
+	public int getEndStation(int row) {
+		return endStation[row];
+	}
+
+	/**
+	 * @return the endLat of a row
+	 */
+	public double getEndLat(int row) {
+		return endLat[row];
+	}
+
+	/**
+	 * @return the endLong of a row
+	 */
+	public double getEndLong(int row) {
+		return endLong[row];
+	}
+
+	/**
+	 * @return the distance of a row in kilometres, or NaN
+	 * if it is missing coordinates
+	 */
+	public double getDistance(int row) {
+		return distance[row];
+	}
+
+	/**
+	 * Works out a row's Haversine distance from its coordinates
+	 */
+	private double distanceOf(int row) {
+		if (startLat[row] == -1.0 || startLong[row] == -1.0 ||
+				endLat[row] == -1.0 || endLong[row] == -1.0) {
+			return Double.NaN;
+		}
+		return StationGrid.haversine(startLat[row], startLong[row], endLat[row], endLong[row]);
+	}
+
+	/**
+	 * @return the bikeID of a row
+	 */
+	public int getBikeID(int row) {
+		return bikeID[row];
+	}
+
+	/**
+	 * @return the planDuration of a row
+	 */
+	public int getPlanDuration(int row) {
+		return planDuration[row];
+	}
+
+	/**
+	 * @return the tripRouteCategory of a row
+	 */
+	public String getTripRouteCategory(int row) {
+		return dictionary.decode(tripRouteCategory[row]);
+	}
+
+	/**
+	 * @return the passholderType of a row
+	 */
+	public String getPassholderType(int row) {
+		return dictionary.decode(passholderType[row]);
+	}
+
+	/**
+	 * @return the dictionary code of the tripRouteCategory of a row
+	 */
+	public int getTripRouteCategoryCode(int row) {
+		return tripRouteCategory[row];
+	}
+
+	/**
+	 * @return the dictionary code of the passholderType of a row
+	 */
+	public int getPassholderTypeCode(int row) {
+		return passholderType[row];
+	}
+
+	/**
+	 * @return the startYear of a row
+	 */
+	public int getStartYear(int row) {
+		return EpochTime.year(startTime[row]);
+	}
+
+	/**
+	 * @return the startMonth of a row
+	 */
+	public int getStartMonth(int row) {
+		return EpochTime.month(startTime[row]);
+	}
+
+	/**
+	 * @return the startDay of a row
+	 */
+	public int getStartDay(int row) {
+		return EpochTime.day(startTime[row]);
+	}
+
+	/**
+	 * @return the startHour of a row
+	 */
+	public int getStartHour(int row) {
+		return EpochTime.hour(startTime[row]);
+	}
+
+	/**
+	 * @return the startMinute of a row
+	 */
+	public int getStartMinute(int row) {
+		return EpochTime.minute(startTime[row]);
+	}
+
+	/**
+	 * @return the startSecond of a row
+	 */
+	public int getStartSecond(int row) {
+		return EpochTime.second(startTime[row]);
+	}
+
+	/**
+	 * @return the endYear of a row
+	 */
+	public int getEndYear(int row) {
+		return EpochTime.year(endTime[row]);
+	}
+
+	/**
+	 * @return the endMonth of a row
+	 */
+	public int getEndMonth(int row) {
+		return EpochTime.month(endTime[row]);
+	}
+
+	/**
+	 * @return the endDay of a row
+	 */
+	public int getEndDay(int row) {
+		return EpochTime.day(endTime[row]);
+	}
+
+	/**
+	 * @return the endHour of a row
+	 */
+	public int getEndHour(int row) {
+		return EpochTime.hour(endTime[row]);
+	}
+
+	/**
+	 * @return the endMinute of a row
+	 */
+	public int getEndMinute(int row) {
+		return EpochTime.minute(endTime[row]);
+	}
+
+	/**
+	 * @return the endSecond of a row
+	 */
+	public int getEndSecond(int row) {
+		return EpochTime.second(endTime[row]);
+	}
+
+	/**
+	 * Estimates the heap used by the columns
+	 * @return the number of bytes held by the arrays
+	 */
+	public long estimateBytes() {
+		long perRow = 6 * 4 + 2 * 8 + 5 * 8 + 2 * 4;
+		return perRow * tripID.length;
+	}
+
+	/**
+	 * Hands the columns to the snapshot writer
+	 */
+	int[] tripIDColumn() {
+		return tripID;
+	}
+
+	int[] durationColumn() {
+		return duration;
+	}
+
+	long[] startTimeColumn() {
+		return startTime;
+	}
+
+	long[] endTimeColumn() {
+		return endTime;
+	}
+
+	int[] startStationColumn() {
+		return startStation;
+	}
+
+	double[] startLatColumn() {
+		return startLat;
+	}
+
+	double[] startLongColumn() {
+		return startLong;
+	}
+
+	int[] endStationColumn() {
+		return endStation;
+	}
+
+	double[] endLatColumn() {
+		return endLat;
+	}
+
+	double[] endLongColumn() {
+		return endLong;
+	}
+
+	double[] distanceColumn() {
+		return distance;
+	}
+
+	int[] bikeIDColumn() {
+		return bikeID;
+	}
+
+	int[] planDurationColumn() {
+		return planDuration;
+	}
+
+	int[] tripRouteCategoryColumn() {
+		return tripRouteCategory;
+	}
+
+	int[] passholderTypeColumn() {
+		return passholderType;
+	}
+
+	/**
+	 * Marks rows that were filled in directly through
+	 * the column arrays as part of the table, and works
+	 * out their distances
+	 * @param rows is the number of filled rows
+	 */
+	void setSize(int rows) {
+		size = rows;
+		for (int row = 0; row < rows; row++) {
+			distance[row] = distanceOf(row);
+		}
+	}
+
+	private int nextRow() {
+		if (size == tripID.length) {
+			grow(size * 2);
+		}
+		return size++;
+	}
+
+	private void allocate(int capacity) {
+		tripID = new int[capacity];
+		duration = new int[capacity];
+		startTime = new long[capacity];
+		endTime = new long[capacity];
+		startStation = new int[capacity];
+		startLat = new double[capacity];
+		startLong = new double[capacity];
+		endStation = new int[capacity];
+		endLat = new double[capacity];
+		endLong = new double[capacity];
+		distance = new double[capacity];
+		bikeID = new int[capacity];
+		planDuration = new int[capacity];
+		tripRouteCategory = new int[capacity];
+		passholderType = new int[capacity];
+	}
+
+	private void grow(int capacity) {
+		tripID = Arrays.copyOf(tripID, capacity);
+		duration = Arrays.copyOf(duration, capacity);
+		startTime = Arrays.copyOf(startTime, capacity);
+		endTime = Arrays.copyOf(endTime, capacity);
+		startStation = Arrays.copyOf(startStation, capacity);
+		startLat = Arrays.copyOf(startLat, capacity);
+		startLong = Arrays.copyOf(startLong, capacity);
+		endStation = Arrays.copyOf(endStation, capacity);
+		endLat = Arrays.copyOf(endLat, capacity);
+		endLong = Arrays.copyOf(endLong, capacity);
+		distance = Arrays.copyOf(distance, capacity);
+		bikeID = Arrays.copyOf(bikeID, capacity);
+		planDuration = Arrays.copyOf(planDuration, capacity);
+		tripRouteCategory = Arrays.copyOf(tripRouteCategory, capacity);
+		passholderType = Arrays.copyOf(passholderType, capacity);
+	}
+
+	/**
+	 * Collects trips into a new table
+	 * A builder is a TripConsumer, so it can be handed to the
+	 * trip file parser, and it takes no more trips once built
+	 */
+	public static final class Builder implements TripConsumer {
+
+		private TripTable table;
+
+		/**
+		 * Starts an empty table
+		 */
+		public Builder() {
+			this(DEFAULT_CAPACITY);
+		}
+
+		/**
+		 * @param capacity is the number of rows to allocate up front
+		 */
+		public Builder(int capacity) {
+			table = new TripTable(capacity);
+		}
+
+		/**
+		 * Appends a row decoded by the trip file parser
+		 * @param trip is the decoded row
+		 */
+		@Override
+		public void accept(TripRecord trip) {
+			open().append(trip);
+		}
+
+		/**
+		 * Appends a trip object
+		 * @param t is the trip to add
+		 */
+		public void add(Trip t) {
+			open().append(t);
+		}
+
+		/**
+		 * @return the table holding every trip added so far
+		 */
+		public TripTable build() {
+			TripTable built = open();
+			table = null;
+			return built;
+		}
+
+		private TripTable open() {
+			if (table == null) {
+				throw new IllegalStateException("the table has already been built");
+			}
+			return table;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+
+/**
+ * Compares the TripTable columns with a list of Trip objects
+ * It reports the heap each one takes per trip and how fast
+ * a typical full scan runs over each
+ * Usage: java TripTableBenchmark tripFile [rounds]
+ *
+ */
+public class TripTableBenchmark {
+
+	public static void main(String[] args) throws FileNotFoundException {
+		String fileNameTrips = args.length > 0 ? args[0] : "indego-trips-2017-q3.csv";
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		long before = usedHeap();
+		TripTable table = new TripReader(fileNameTrips, TripReader.Mode.PARALLEL).getTripTable();
+		long tableBytes = usedHeap() - before;
+		before = usedHeap();
+		ArrayList<Trip> trips = table.toTrips();
+		long listBytes = usedHeap() - before;
+		int size = table.size();
+		System.out.println(String.format("Heap per trip: table %.1f bytes, objects %.1f bytes",
+				(double) tableBytes / size, (double) listBytes / size));
+
+		for (int round = 1; round <= rounds; round++) {
+			long start = System.nanoTime();
+			double objectResult = scanObjects(trips);
+			double objectSeconds = (System.nanoTime() - start) / 1e9;
+			start = System.nanoTime();
+			double tableResult = scanTable(table);
+			double tableSeconds = (System.nanoTime() - start) / 1e9;
+			System.out.println(String.format("Round %d: objects %.1f M trips/s, table %.1f M trips/s (%s)",
+					round, size / objectSeconds / 1e6, size / tableSeconds / 1e6,
+					objectResult == tableResult ? "same result" : "DIFFERENT RESULT"));
+		}
+	}
+
+	/**
+	 * Sums duration and longest distance over one-way trips,
+	 * the kind of pass most DataAnalysis queries make
+	 */
+	private static double scanObjects(ArrayList<Trip> trips) {
+		long duration = 0;
+		double longest = 0.0;
+		for (Trip t : trips) {
+			if (t.getStartStation() != t.getEndStation()) {
+				duration += t.getDuration();
+				double distance = Math.sqrt(Math.pow(t.getStartLat() - t.getEndLat(), 2)
+						+ Math.pow(t.getStartLong() - t.getEndLong(), 2));
+				longest = Math.max(longest, distance);
+			}
+		}
+		return duration + longest;
+	}
+
+	private static double scanTable(TripTable trips) {
+		long duration = 0;
+		double longest = 0.0;
+		for (int row = 0; row < trips.size(); row++) {
+			if (trips.getStartStation(row) != trips.getEndStation(row)) {
+				duration += trips.getDuration(row);
+				double distance = Math.sqrt(Math.pow(trips.getStartLat(row) - trips.getEndLat(row), 2)
+						+ Math.pow(trips.getStartLong(row) - trips.getEndLong(row), 2));
+				longest = Math.max(longest, distance);
+			}
+		}
+		return duration + longest;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
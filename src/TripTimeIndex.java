@@ -0,0 +1,182 @@
+/**
+ * This class keeps two orderings of the rows of a trip table
+ * One sorts trips by start timestamp, so the trips that started
+ * in any date range sit in one contiguous run found by binary search
+ * The other sorts trips by the time of day they started, so a
+ * daily window such as 7:00 to 9:00 on any day is also one run,
+ * or two when the window wraps past midnight
+ * Both orders are stable, so trips that start together stay in
+ * file order, and a query costs O(log n + k) for k matching trips
+ * The table itself is not moved; TripTable.select can copy it
+ * into start-time order when that layout is wanted
+ *
+ */
+public class TripTimeIndex {
+
+	private int[] byStart;
+	private long[] sortedStarts;
+	private int[] byTimeOfDay;
+	private int[] sortedSecondOfDay;
+
+	/**
+	 * Builds both orderings for all trips in a table
+	 * @param trips are the trips to order
+	 */
+	public TripTimeIndex(TripTable trips) {
+		int size = trips.size();
+		byStart = new int[size];
+		boolean inOrder = true;
+		for (int row = 0; row < size; row++) {
+			byStart[row] = row;
+			inOrder &= row == 0 || trips.getStartTime(row - 1) <= trips.getStartTime(row);
+		}
+		if (!inOrder) {
+			sortByStart(trips, byStart, new int[size], 0, size);
+		}
+		sortedStarts = new long[size];
+		for (int i = 0; i < size; i++) {
+			sortedStarts[i] = trips.getStartTime(byStart[i]);
+		}
+
+		int[] secondOfDay = new int[size];
+		int[] bucketStart = new int[EpochTime.SECONDS_PER_DAY + 1];
+		for (int row = 0; row < size; row++) {
+			secondOfDay[row] = EpochTime.secondOfDay(trips.getStartTime(row));
+			bucketStart[secondOfDay[row] + 1]++;
+		}
+		for (int second = 0; second < EpochTime.SECONDS_PER_DAY; second++) {
+			bucketStart[second + 1] += bucketStart[second];
+		}
+		byTimeOfDay = new int[size];
+		sortedSecondOfDay = new int[size];
+		for (int row = 0; row < size; row++) {
+			int at = bucketStart[secondOfDay[row]]++;
+			byTimeOfDay[at] = row;
+			sortedSecondOfDay[at] = secondOfDay[row];
+		}
+	}
+
+	/**
+	 * A stable merge sort of rows by start time
+	 */
+	private static void sortByStart(TripTable trips, int[] rows, int[] buffer, int from, int to) {
+		if (to - from < 2) {
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		sortByStart(trips, rows, buffer, from, middle);
+		sortByStart(trips, rows, buffer, middle, to);
+		if (trips.getStartTime(rows[middle - 1]) <= trips.getStartTime(rows[middle])) {
+			return;
+		}
+		int i = from;
+		int j = middle;
+		int n = from;
+		while (i < middle || j < to) {
+			if (j == to || (i < middle && trips.getStartTime(rows[i]) <= trips.getStartTime(rows[j]))) {
+				buffer[n++] = rows[i++];
+			} else {
+				buffer[n++] = rows[j++];
+			}
+		}
+		System.arraycopy(buffer, from, rows, from, to - from);
+	}
+
+	/**
+	 * @return the rows of the table ordered by start time
+	 */
+	public int[] getStartOrder() {
+		return byStart.clone();
+	}
+
+	/**
+	 * @return the rows of the table ordered by start time of day
+	 */
+	public int[] getTimeOfDayOrder() {
+		return byTimeOfDay.clone();
+	}
+
+	/**
+	 * @param from is the earliest start in epoch seconds
+	 * @param to is the first start in epoch seconds to leave out
+	 * @return the number of trips that started in the range
+	 */
+	public int countStartingBetween(long from, long to) {
+		return Math.max(0, firstAtOrAfter(sortedStarts, to) - firstAtOrAfter(sortedStarts, from));
+	}
+
+	/**
+	 * @param from is the earliest start in epoch seconds
+	 * @param to is the first start in epoch seconds to leave out
+	 * @return the rows of the trips that started in the range,
+	 * ordered by start time
+	 */
+	public int[] rowsStartingBetween(long from, long to) {
+		int first = firstAtOrAfter(sortedStarts, from);
+		int last = Math.max(first, firstAtOrAfter(sortedStarts, to));
+		int[] rows = new int[last - first];
+		System.arraycopy(byStart, first, rows, 0, rows.length);
+		return rows;
+	}
+
+	/**
+	 * A window whose end comes before its start wraps past
+	 * midnight, so 22:00 to 2:00 covers both ends of the day
+	 * @param fromSecond is the earliest second of the day
+	 * @param untilSecond is the first second of the day to leave out
+	 * @return the number of trips that started in the window on any day
+	 */
+	public int countStartingInWindow(int fromSecond, int untilSecond) {
+		if (fromSecond <= untilSecond) {
+			return firstAtOrAfter(sortedSecondOfDay, untilSecond) - firstAtOrAfter(sortedSecondOfDay, fromSecond);
+		}
+		return countStartingInWindow(fromSecond, EpochTime.SECONDS_PER_DAY) + countStartingInWindow(0, untilSecond);
+	}
+
+	/**
+	 * @param fromSecond is the earliest second of the day
+	 * @param untilSecond is the first second of the day to leave out
+	 * @return the rows of the trips that started in the window on
+	 * any day, ordered by time of day
+	 */
+	public int[] rowsStartingInWindow(int fromSecond, int untilSecond) {
+		int[] rows = new int[countStartingInWindow(fromSecond, untilSecond)];
+		if (fromSecond <= untilSecond) {
+			System.arraycopy(byTimeOfDay, firstAtOrAfter(sortedSecondOfDay, fromSecond), rows, 0, rows.length);
+		} else {
+			int late = firstAtOrAfter(sortedSecondOfDay, fromSecond);
+			int lateCount = byTimeOfDay.length - late;
+			System.arraycopy(byTimeOfDay, late, rows, 0, lateCount);
+			System.arraycopy(byTimeOfDay, 0, rows, lateCount, rows.length - lateCount);
+		}
+		return rows;
+	}
+
+	private static int firstAtOrAfter(long[] sorted, long key) {
+		int low = 0;
+		int high = sorted.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorted[mid] < key) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private static int firstAtOrAfter(int[] sorted, int key) {
+		int low = 0;
+		int high = sorted.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorted[mid] < key) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}